@@ -0,0 +1,68 @@
+package ru.auth.config;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Стоимость хэширования и проверки пароля для алгоритмов и параметров из {@link PasswordEncoderConfig}.
+ * Формат параметра: алгоритм:стоимость (для argon2 - память в КБ, итерации фиксированы как по умолчанию).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+public class PasswordEncoderBenchmark {
+
+    private static final String PASSWORD = "secure_pass";
+
+    @Param({"bcrypt:8", "bcrypt:10", "bcrypt:12", "pbkdf2:310000", "argon2:19456"})
+    private String encoder;
+
+    private PasswordEncoder passwordEncoder;
+    private String hash;
+
+    @Setup
+    public void setUp() {
+        String[] parts = encoder.split(":");
+        int cost = Integer.parseInt(parts[1]);
+        switch (parts[0]) {
+            case PasswordEncoderConfig.BCRYPT:
+                passwordEncoder = new BCryptPasswordEncoder(cost);
+                break;
+            case PasswordEncoderConfig.PBKDF2:
+                passwordEncoder = PasswordEncoderConfig.pbkdf2(cost);
+                break;
+            case PasswordEncoderConfig.ARGON2:
+                passwordEncoder = PasswordEncoderConfig.argon2(cost, 2);
+                break;
+            default:
+                throw new IllegalArgumentException(encoder);
+        }
+        hash = passwordEncoder.encode(PASSWORD);
+    }
+
+    @Benchmark
+    public String encode() {
+        return passwordEncoder.encode(PASSWORD);
+    }
+
+    @Benchmark
+    public boolean matches() {
+        return passwordEncoder.matches(PASSWORD, hash);
+    }
+}
@@ -0,0 +1,93 @@
+package ru.auth.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import ru.auth.config.CachingUserDetailsService;
+import ru.auth.config.CustomUserDetailsService;
+import ru.auth.repository.RoleRepository;
+import ru.auth.repository.UserRepository;
+import ru.auth.service.InMemoryRevocationStore;
+import ru.auth.service.RevokedTokenService;
+import ru.auth.service.RoleHierarchyService;
+import ru.auth.service.TokenVersionService;
+
+import java.util.Collections;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Полный проход {@link JwtRequestFilter} для запроса с валидным токеном на mock-объектах сервлета.
+ * База заменена моками: измеряется сам фильтр вместе с кэшами, а не JDBC.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtRequestFilterBenchmark {
+
+    @Param({"false", "true"})
+    private boolean stateless;
+
+    @Param({"false", "true"})
+    private boolean tokenCache;
+
+    private JwtRequestFilter filter;
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+
+    @Setup
+    public void setUp() {
+        JwtUtil jwtUtil = new JwtUtil(new JwtKeyRing("HS256", "benchmark_secret", 3_600_000L), 3_600_000L);
+        AuthUserDetails user = new AuthUserDetails("bench_user", "", Collections.singletonList(
+                new SimpleGrantedAuthority("ROLE_GUEST")), 0L);
+
+        CustomUserDetailsService delegate = Mockito.mock(CustomUserDetailsService.class);
+        Mockito.when(delegate.loadUserByUsername("bench_user")).thenReturn(user);
+        UserRepository userRepository = Mockito.mock(UserRepository.class);
+        Mockito.when(userRepository.findTokenVersionByLogin("bench_user")).thenReturn(Optional.of(0L));
+
+        VerifiedTokenCache verifiedTokenCache = new VerifiedTokenCache(jwtUtil, tokenCache, 10_000);
+        filter = new JwtRequestFilter(new TokenAuthenticator(
+                new CachingUserDetailsService(delegate, 10_000, 3_600_000L, 5_000L),
+                jwtUtil,
+                verifiedTokenCache,
+                new RevokedTokenService(new InMemoryRevocationStore(60_000L), verifiedTokenCache, 1_000, 0.001, 5_000L),
+                new TokenVersionService(userRepository, 3_600_000L, 10_000),
+                new RoleHierarchyService(Mockito.mock(RoleRepository.class), event -> { }),
+                new AuthMetrics(new SimpleMeterRegistry()),
+                stateless));
+
+        request = new MockHttpServletRequest("GET", "/api/guest/hello");
+        request.addHeader("Authorization", "Bearer " + jwtUtil.generateToken(user));
+        response = new MockHttpServletResponse();
+    }
+
+    @Benchmark
+    public Authentication doFilter() throws Exception {
+        try {
+            filter.doFilterInternal(request, response, new MockFilterChain());
+            return SecurityContextHolder.getContext().getAuthentication();
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+}
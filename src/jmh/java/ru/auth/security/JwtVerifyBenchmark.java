@@ -0,0 +1,83 @@
+package ru.auth.security;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение проверки токена в фильтре: прежний путь (три полных разбора токена:
+ * extractUsername, затем validateToken с extractUsername и extractExpiration),
+ * один разбор через jjwt и {@link JwtUtil#verify(String)} с быстрым путем для HS256.
+ * Выделение памяти на операцию видно с профилировщиком: -Djmh.args="JwtVerifyBenchmark -prof gc".
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtVerifyBenchmark {
+
+    private static final String SECRET = "benchmark_secret";
+
+    private JwtUtil jwtUtil;
+    private SecretKey key;
+    private JwtParser parser;
+    private UserDetails userDetails;
+    private String token;
+
+    @Setup
+    public void setUp() throws Exception {
+        jwtUtil = new JwtUtil(new JwtKeyRing("HS256", SECRET, 3_600_000L), 3_600_000L);
+        key = new SecretKeySpec(MessageDigest.getInstance("SHA-256")
+                .digest(SECRET.getBytes(StandardCharsets.UTF_8)), "HmacSHA256");
+        parser = Jwts.parserBuilder().setSigningKey(key).build();
+        userDetails = new User("bench_user", "", Collections.emptyList());
+        token = jwtUtil.generateToken(userDetails);
+    }
+
+    private Claims legacyClaims(String jwt) {
+        // Как раньше: парсер и ключ собираются заново на каждый вызов
+        return Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(jwt).getBody();
+    }
+
+    @Benchmark
+    public boolean legacyThreeParses() {
+        String username = legacyClaims(token).getSubject();
+        boolean sameUser = legacyClaims(token).getSubject().equals(userDetails.getUsername());
+        boolean expired = legacyClaims(token).getExpiration().before(new Date());
+        return username != null && sameUser && !expired;
+    }
+
+    @Benchmark
+    public boolean jjwtOnce() {
+        Claims claims = parser.parseClaimsJws(token).getBody();
+        return claims.getSubject().equals(userDetails.getUsername()) && claims.getExpiration().after(new Date());
+    }
+
+    @Benchmark
+    public boolean verifyOnce() {
+        VerifiedToken verified = jwtUtil.verify(token);
+        return jwtUtil.validateToken(verified, userDetails);
+    }
+}
@@ -0,0 +1,102 @@
+package ru.auth.security;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authorization.AuthenticatedAuthorizationManager;
+import org.springframework.security.authorization.AuthorityAuthorizationManager;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
+import org.springframework.security.web.access.intercept.RequestMatcherDelegatingAuthorizationManager;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.AnyRequestMatcher;
+
+import jakarta.servlet.http.HttpServletRequest;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Авторизация запроса по пути: цепочка матчеров Spring Security с ролями-строками
+ * (как было в SecurityConfig) против {@link PathAuthorizationManager} с масками ролей.
+ * Пути выбраны так, чтобы правило находилось в начале, в конце цепочки и не находилось вовсе.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PathAuthorizationBenchmark {
+
+    @Param({"/auth/login", "/api/premium/feature", "/api/guest/hello"})
+    private String path;
+
+    private AuthorizationManager<HttpServletRequest> matcherChain;
+    private PathAuthorizationManager trie;
+    private RequestAuthorizationContext context;
+    private HttpServletRequest request;
+    private Supplier<Authentication> chainAuthentication;
+    private Supplier<Authentication> trieAuthentication;
+
+    @Setup
+    public void setUp() {
+        RequestMatcherDelegatingAuthorizationManager.Builder chain = RequestMatcherDelegatingAuthorizationManager.builder();
+        for (String permitted : Arrays.asList("/auth/register", "/auth/login", "/auth/refresh", "/.well-known/jwks.json",
+                "/auth/introspect", "/auth/introspect/batch", "/actuator/health", "/error")) {
+            chain.add(new AntPathRequestMatcher(permitted), (a, c) -> new AuthorizationDecision(true));
+        }
+        chain.add(new AntPathRequestMatcher("/actuator/prometheus"), AuthorityAuthorizationManager.hasRole("ADMIN"));
+        chain.add(new AntPathRequestMatcher("/api/admin/**"), AuthorityAuthorizationManager.hasRole("ADMIN"));
+        chain.add(new AntPathRequestMatcher("/api/premium/**"), AuthorityAuthorizationManager.hasRole("PREMIUM_USER"));
+        chain.add(AnyRequestMatcher.INSTANCE, AuthenticatedAuthorizationManager.authenticated());
+        matcherChain = chain.build();
+
+        trie = PathAuthorizationManager.builder()
+                .permitAll("/auth/register", "/auth/login", "/auth/refresh", "/.well-known/jwks.json")
+                .permitAll("/auth/introspect", "/auth/introspect/batch")
+                .permitAll("/actuator/health")
+                .permitAll("/error")
+                .hasAnyRole("/actuator/prometheus", "ADMIN")
+                .hasAnyRole("/api/admin/**", "ADMIN")
+                .hasAnyRole("/api/premium/**", "PREMIUM_USER")
+                .build();
+
+        request = new MockHttpServletRequest("GET", path);
+        context = new RequestAuthorizationContext(request);
+
+        // Одни и те же роли: строками, как их раньше собирал CustomUserDetailsService, и из реестра с маской
+        List<SimpleGrantedAuthority> stringRoles = Arrays.asList(
+                new SimpleGrantedAuthority("ROLE_GUEST"), new SimpleGrantedAuthority("ROLE_PREMIUM_USER"));
+        AuthUserDetails user = new AuthUserDetails("bench_user", "", Arrays.asList(
+                RoleRegistry.authority("GUEST"), RoleRegistry.authority("PREMIUM_USER")), 0L);
+        Authentication withStrings = new UsernamePasswordAuthenticationToken("bench_user", null, stringRoles);
+        Authentication withMask = new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities());
+        chainAuthentication = () -> withStrings;
+        trieAuthentication = () -> withMask;
+    }
+
+    @Benchmark
+    public boolean matcherChain() {
+        return matcherChain.check(chainAuthentication, request).isGranted();
+    }
+
+    @Benchmark
+    public boolean prefixTrie() {
+        return trie.check(trieAuthentication, context).isGranted();
+    }
+}
@@ -0,0 +1,64 @@
+package ru.auth.security;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.core.userdetails.User;
+
+import java.util.Collections;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Проверка "горячих" токенов (каждый предъявляется многократно) без кэша и через {@link VerifiedTokenCache}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class VerifiedTokenCacheBenchmark {
+
+    @Param({"100", "10000"})
+    private int hotTokens;
+
+    private JwtUtil jwtUtil;
+    private VerifiedTokenCache cache;
+    private String[] tokens;
+
+    @Setup
+    public void setUp() {
+        jwtUtil = new JwtUtil(new JwtKeyRing("HS256", "benchmark_secret", 3_600_000L), 3_600_000L);
+        cache = new VerifiedTokenCache(jwtUtil, true, 100_000);
+        tokens = new String[hotTokens];
+        for (int i = 0; i < hotTokens; i++) {
+            tokens[i] = jwtUtil.generateToken(new User("bench_user_" + i, "", Collections.emptyList()));
+            cache.verify(tokens[i]);
+        }
+    }
+
+    private String nextToken() {
+        return tokens[ThreadLocalRandom.current().nextInt(tokens.length)];
+    }
+
+    @Benchmark
+    public VerifiedToken withoutCache() {
+        return jwtUtil.verify(nextToken());
+    }
+
+    @Benchmark
+    public VerifiedToken withCache() {
+        return cache.verify(nextToken());
+    }
+}
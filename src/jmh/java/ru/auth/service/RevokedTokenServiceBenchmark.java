@@ -0,0 +1,94 @@
+package ru.auth.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.auth.security.JwtKeyRing;
+import ru.auth.security.JwtUtil;
+import ru.auth.security.TokenId;
+import ru.auth.security.VerifiedToken;
+import ru.auth.security.VerifiedTokenCache;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link RevokedTokenService#isTokenRevoked} при миллионах отозванных токенов и параллельных запросах.
+ * shared=true имитирует общее хранилище: перед ним встает фильтр Блума.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class RevokedTokenServiceBenchmark {
+
+    private static final int SAMPLE_SIZE = 1 << 16;
+
+    @Param({"1000000", "3000000"})
+    private int revokedCount;
+
+    @Param({"false", "true"})
+    private boolean shared;
+
+    private RevokedTokenService service;
+    private VerifiedToken[] revoked;
+    private VerifiedToken[] active;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        long expiresAt = System.currentTimeMillis() + 3_600_000L;
+        RevocationStore store = new InMemoryRevocationStore(60_000L) {
+            @Override
+            public boolean isShared() {
+                return shared;
+            }
+        };
+        revoked = new VerifiedToken[SAMPLE_SIZE];
+        for (int i = 0; i < revokedCount; i++) {
+            VerifiedToken token = token(expiresAt);
+            store.revoke(TokenId.of(token), expiresAt);
+            if (i < SAMPLE_SIZE) {
+                revoked[i] = token;
+            }
+        }
+        active = new VerifiedToken[SAMPLE_SIZE];
+        for (int i = 0; i < SAMPLE_SIZE; i++) {
+            active[i] = token(expiresAt);
+        }
+        JwtUtil jwtUtil = new JwtUtil(new JwtKeyRing("HS256", "benchmark_secret", 3_600_000L), 3_600_000L);
+        service = new RevokedTokenService(store, new VerifiedTokenCache(jwtUtil, true, 10_000),
+                revokedCount, 0.001, 5_000L);
+        service.initFilter();
+    }
+
+    private static VerifiedToken token(long expiresAt) {
+        return new VerifiedToken("", "bench_user", new Date(), new Date(expiresAt), UUID.randomUUID().toString(),
+                Collections.emptyList(), null);
+    }
+
+    @Benchmark
+    public boolean activeToken() {
+        return service.isTokenRevoked(active[ThreadLocalRandom.current().nextInt(SAMPLE_SIZE)]);
+    }
+
+    @Benchmark
+    public boolean revokedToken() {
+        return service.isTokenRevoked(revoked[ThreadLocalRandom.current().nextInt(SAMPLE_SIZE)]);
+    }
+}
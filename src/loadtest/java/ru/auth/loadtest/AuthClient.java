@@ -0,0 +1,93 @@
+package ru.auth.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+
+/**
+ * HTTP клиент к запущенному сервису. Каждый вызов возвращает true только при ответе 2xx.
+ */
+class AuthClient {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private final HttpClient http;
+    private final String baseUrl;
+
+    AuthClient(String baseUrl) {
+        this.baseUrl = baseUrl;
+        this.http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+    }
+
+    /**
+     * Сессия одного пользователя: текущие access и refresh токены.
+     */
+    static final class Session {
+        final String login;
+        final String password;
+        String token;
+        String refreshToken;
+
+        Session(String login, String password) {
+            this.login = login;
+            this.password = password;
+        }
+    }
+
+    boolean login(Session session) throws IOException, InterruptedException {
+        HttpResponse<String> response = post("/auth/login", null,
+                "{\"login\":\"" + session.login + "\",\"password\":\"" + session.password + "\"}");
+        return updateTokens(session, response);
+    }
+
+    boolean refresh(Session session) throws IOException, InterruptedException {
+        HttpResponse<String> response = post("/auth/refresh", null,
+                "{\"refreshToken\":\"" + session.refreshToken + "\"}");
+        return updateTokens(session, response);
+    }
+
+    boolean revoke(Session session) throws IOException, InterruptedException {
+        return isSuccess(post("/auth/revoke", session.token, ""));
+    }
+
+    boolean get(String path, Session session) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("Authorization", "Bearer " + session.token)
+                .GET()
+                .build();
+        return isSuccess(http.send(request, HttpResponse.BodyHandlers.ofString()));
+    }
+
+    private HttpResponse<String> post(String path, String token, String body) throws IOException, InterruptedException {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body));
+        if (token != null) {
+            builder.header("Authorization", "Bearer " + token);
+        }
+        return http.send(builder.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static boolean updateTokens(Session session, HttpResponse<String> response) throws IOException {
+        if (!isSuccess(response)) {
+            return false;
+        }
+        JsonNode body = JSON.readTree(response.body());
+        session.token = body.path("token").asText();
+        session.refreshToken = body.path("refreshToken").asText();
+        return true;
+    }
+
+    private static boolean isSuccess(HttpResponse<String> response) {
+        return response.statusCode() / 100 == 2;
+    }
+}
@@ -0,0 +1,290 @@
+package ru.auth.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.auth.AuthServiceApplication;
+import ru.auth.service.AuthService;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Нагрузочный тест: поднимает сервис на встроенной H2 (режим PostgreSQL), заводит пользователей
+ * через {@link AuthService} и гоняет смесь запросов к /auth и /api/* с заданным числом потоков.
+ * По каждой операции печатаются пропускная способность и перцентили задержки (HdrHistogram).
+ * Нагрузка замкнутая: каждый поток шлет следующий запрос после ответа на предыдущий.
+ *
+ * Параметры теста: --users, --concurrency, --duration-s, --warmup-s, --mix (например login:5,guest:60).
+ * Остальные аргументы --key=value передаются Spring, например --jwt.stateless.enabled=true.
+ */
+public final class LoadTest {
+
+    private static final String PASSWORD = "load_pass_1";
+
+    private static final List<String> DEFAULT_SPRING_ARGS = Arrays.asList(
+            "--server.port=0",
+            "--spring.main.banner-mode=off",
+            "--logging.level.root=WARN",
+            "--spring.datasource.url=jdbc:h2:mem:loadtest;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;"
+                    + "DEFAULT_NULL_ORDERING=HIGH;DB_CLOSE_DELAY=-1",
+            "--spring.datasource.username=sa",
+            "--spring.datasource.password=",
+            "--spring.datasource.driver-class-name=org.h2.Driver",
+            "--spring.jpa.hibernate.ddl-auto=create-drop",
+            "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+            "--spring.jpa.show-sql=false",
+            // Скрипт перехода на последовательности написан для PostgreSQL, схема H2 создается с нуля
+            "--spring.sql.init.mode=never",
+            // Токены не должны истекать посреди прогона
+            "--jwt.expiration.ms=3600000",
+            // Все виртуальные пользователи входят с одного адреса
+            "--auth.throttle.enabled=false"
+    );
+
+    private int users = 200;
+    private int concurrency = 16;
+    private int durationSeconds = 30;
+    private int warmupSeconds = 10;
+    private Map<Operation, Integer> mix = Operation.parseMix("login:5,refresh:5,revoke:2,guest:58,premium:25,admin:5");
+    private final List<String> springArgs = new ArrayList<>(DEFAULT_SPRING_ARGS);
+
+    private final Map<Operation, Recorder> latencies = new EnumMap<>(Operation.class);
+    private final Map<Operation, LongAdder> errors = new EnumMap<>(Operation.class);
+    private volatile boolean running = true;
+
+    private LoadTest() {
+        for (Operation operation : Operation.values()) {
+            latencies.put(operation, new Recorder(3));
+            errors.put(operation, new LongAdder());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTest loadTest = new LoadTest();
+        loadTest.parseArgs(args);
+        loadTest.run();
+    }
+
+    private void parseArgs(String[] args) {
+        for (String arg : args) {
+            String[] pair = arg.startsWith("--") ? arg.substring(2).split("=", 2) : new String[0];
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Ожидался аргумент вида --key=value: " + arg);
+            }
+            switch (pair[0]) {
+                case "users":
+                    users = Integer.parseInt(pair[1]);
+                    break;
+                case "concurrency":
+                    concurrency = Integer.parseInt(pair[1]);
+                    break;
+                case "duration-s":
+                    durationSeconds = Integer.parseInt(pair[1]);
+                    break;
+                case "warmup-s":
+                    warmupSeconds = Integer.parseInt(pair[1]);
+                    break;
+                case "mix":
+                    mix = Operation.parseMix(pair[1]);
+                    break;
+                default:
+                    springArgs.add(arg);
+            }
+        }
+        if (users < concurrency) {
+            // У каждого потока свои пользователи: ротация refresh токенов не должна пересекаться
+            throw new IllegalArgumentException("--users должно быть не меньше --concurrency");
+        }
+    }
+
+    private void run() throws Exception {
+        ConfigurableApplicationContext context = SpringApplication.run(AuthServiceApplication.class,
+                springArgs.toArray(new String[0]));
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+        try {
+            int port = context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+            AuthClient client = new AuthClient("http://localhost:" + port);
+
+            long seedStart = System.nanoTime();
+            seedUsers(context.getBean(AuthService.class));
+            System.out.printf("Заведено пользователей: %d за %.1f с%n", users, (System.nanoTime() - seedStart) / 1e9);
+
+            AuthClient.Session admin = new AuthClient.Session("admin", "secure_pass");
+            if (!client.login(admin)) {
+                throw new IllegalStateException("Не удалось войти под admin");
+            }
+            List<List<AuthClient.Session>> partitions = loginAll(client, workers);
+
+            System.out.printf("Прогрев %d с, замер %d с, потоков: %d, смесь: %s%n",
+                    warmupSeconds, durationSeconds, concurrency, mix);
+            List<Future<?>> drivers = new ArrayList<>();
+            for (List<AuthClient.Session> partition : partitions) {
+                drivers.add(workers.submit(() -> drive(client, partition, admin)));
+            }
+            TimeUnit.SECONDS.sleep(warmupSeconds);
+            resetStatistics();
+            long measureStart = System.nanoTime();
+            TimeUnit.SECONDS.sleep(durationSeconds);
+            Map<Operation, Histogram> histograms = new EnumMap<>(Operation.class);
+            for (Operation operation : Operation.values()) {
+                histograms.put(operation, latencies.get(operation).getIntervalHistogram());
+            }
+            double elapsedSeconds = (System.nanoTime() - measureStart) / 1e9;
+            running = false;
+            for (Future<?> future : drivers) {
+                future.get();
+            }
+            report(histograms, elapsedSeconds);
+        } finally {
+            workers.shutdownNow();
+            context.close();
+        }
+    }
+
+    private void seedUsers(AuthService authService) throws InterruptedException {
+        // Не больше задач, чем помещается в очередь пула хэширования
+        Semaphore inFlight = new Semaphore(50);
+        List<CompletableFuture<?>> registrations = new ArrayList<>(users);
+        for (int i = 0; i < users; i++) {
+            inFlight.acquire();
+            registrations.add(authService.registerUser(login(i), PASSWORD, login(i) + "@load.test")
+                    .whenComplete((user, error) -> inFlight.release()));
+        }
+        CompletableFuture.allOf(registrations.toArray(new CompletableFuture[0])).join();
+        for (int i = 0; i < users; i++) {
+            authService.addRole(login(i), "PREMIUM_USER");
+        }
+    }
+
+    private static String login(int index) {
+        return "load_user_" + index;
+    }
+
+    private List<List<AuthClient.Session>> loginAll(AuthClient client, ExecutorService executor) throws Exception {
+        List<List<AuthClient.Session>> partitions = new ArrayList<>(concurrency);
+        List<Callable<Boolean>> logins = new ArrayList<>(users);
+        for (int worker = 0; worker < concurrency; worker++) {
+            partitions.add(new ArrayList<>());
+        }
+        for (int i = 0; i < users; i++) {
+            AuthClient.Session session = new AuthClient.Session(login(i), PASSWORD);
+            partitions.get(i % concurrency).add(session);
+            logins.add(() -> client.login(session));
+        }
+        for (Future<Boolean> login : executor.invokeAll(logins)) {
+            if (!login.get()) {
+                throw new IllegalStateException("Не удалось войти под заведенным пользователем");
+            }
+        }
+        return partitions;
+    }
+
+    private void drive(AuthClient client, List<AuthClient.Session> sessions, AuthClient.Session admin) {
+        Operation[] operations = mix.keySet().toArray(new Operation[0]);
+        int[] cumulative = new int[operations.length];
+        int total = 0;
+        for (int i = 0; i < operations.length; i++) {
+            total += mix.get(operations[i]);
+            cumulative[i] = total;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (running) {
+            int roll = random.nextInt(total);
+            int index = 0;
+            while (cumulative[index] <= roll) {
+                index++;
+            }
+            execute(client, operations[index], sessions.get(random.nextInt(sessions.size())), admin);
+        }
+    }
+
+    private void execute(AuthClient client, Operation operation, AuthClient.Session session, AuthClient.Session admin) {
+        long start = System.nanoTime();
+        boolean success;
+        try {
+            switch (operation) {
+                case LOGIN:
+                    success = client.login(session);
+                    break;
+                case REFRESH:
+                    success = client.refresh(session);
+                    break;
+                case REVOKE:
+                    success = client.revoke(session);
+                    break;
+                case GUEST:
+                    success = client.get("/api/guest/hello", session);
+                    break;
+                case PREMIUM:
+                    success = client.get("/api/premium/feature", session);
+                    break;
+                case ADMIN:
+                    success = client.get("/api/admin/greet", admin);
+                    break;
+                default:
+                    throw new IllegalStateException(operation.name());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+            return;
+        } catch (Exception e) {
+            success = false;
+        }
+        if (success) {
+            latencies.get(operation).recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+        } else {
+            errors.get(operation).increment();
+        }
+        if (operation == Operation.REVOKE) {
+            // Отозванный access токен заменяется новым, иначе следующие запросы сессии получат 403
+            execute(client, Operation.REFRESH, session, admin);
+        }
+    }
+
+    private void resetStatistics() {
+        for (Operation operation : Operation.values()) {
+            latencies.get(operation).reset();
+            errors.get(operation).reset();
+        }
+    }
+
+    private void report(Map<Operation, Histogram> histograms, double elapsedSeconds) {
+        System.out.printf("%n%-8s %9s %7s %9s %9s %9s %9s %9s %9s%n",
+                "op", "count", "errors", "op/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        long totalCount = 0;
+        for (Operation operation : Operation.values()) {
+            Histogram histogram = histograms.get(operation);
+            long count = histogram.getTotalCount();
+            long errorCount = errors.get(operation).sum();
+            if (count == 0 && errorCount == 0) {
+                continue;
+            }
+            totalCount += count;
+            System.out.printf("%-8s %9d %7d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                    operation.name().toLowerCase(), count, errorCount, count / elapsedSeconds,
+                    millis(histogram.getValueAtPercentile(50)), millis(histogram.getValueAtPercentile(90)),
+                    millis(histogram.getValueAtPercentile(99)), millis(histogram.getValueAtPercentile(99.9)),
+                    millis(histogram.getMaxValue()));
+        }
+        System.out.printf("%-8s %9d %7s %9.1f%n", "total", totalCount, "", totalCount / elapsedSeconds);
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+}
@@ -0,0 +1,40 @@
+package ru.auth.loadtest;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Операции нагрузочного теста и их доли в смеси.
+ */
+enum Operation {
+    LOGIN,
+    REFRESH,
+    REVOKE,
+    GUEST,
+    PREMIUM,
+    ADMIN;
+
+    /**
+     * Разбирает смесь вида login:5,guest:60,premium:20.
+     * @param mix Строка со смесью.
+     * @return Веса операций; операции, не указанные в смеси, не выполняются.
+     */
+    static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String part : mix.split(",")) {
+            String[] pair = part.trim().split(":");
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Неверный элемент смеси: " + part);
+            }
+            int weight = Integer.parseInt(pair[1].trim());
+            if (weight > 0) {
+                weights.put(Operation.valueOf(pair[0].trim().toUpperCase(Locale.ROOT)), weight);
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("Смесь операций пуста: " + mix);
+        }
+        return weights;
+    }
+}
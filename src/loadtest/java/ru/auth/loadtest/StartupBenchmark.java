@@ -0,0 +1,312 @@
+package ru.auth.loadtest;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+
+/**
+ * Бенчмарк холодного старта: запускает собранный сервис (mvn package) отдельными процессами на встроенной H2
+ * и печатает время до готовности и резидентную память (RSS) в разных режимах.
+ * Время и память берутся из строки "Сервис готов: ..." (StartupConfig), RSS после первого входа - из /proc.
+ * Первый вход под admin показывает, сколько ленивая инициализация переносит со старта на первый запрос.
+ *
+ * Режимы (--modes через запятую): baseline - профиль по умолчанию (ddl-auto=update, SQL в лог), prod - профиль prod,
+ * к нему можно добавить +cds (архив классов, обучается одним запуском перед замером) и +aot (jar собран с -Paot).
+ * Jar распаковывается в target/startup: CDS не умеет брать классы из вложенных jar.
+ *
+ * Параметры: --jar, --runs, --modes, --jvm-args (через пробел). Остальные --key=value передаются Spring.
+ */
+public final class StartupBenchmark {
+
+    private static final String MAIN_CLASS = "ru.auth.AuthServiceApplication";
+    private static final String READY_MARKER = "Сервис готов:";
+    private static final String AOT_INITIALIZER = "ru/auth/AuthServiceApplication__ApplicationContextInitializer.class";
+    private static final long READY_TIMEOUT_SECONDS = 120;
+
+    private static final List<String> DEFAULT_SPRING_ARGS = Arrays.asList(
+            "--server.port=0",
+            "--spring.main.banner-mode=off",
+            "--logging.level.root=WARN",
+            "--logging.level.ru.auth.config.StartupConfig=INFO",
+            "--spring.datasource.username=sa",
+            "--spring.datasource.password=",
+            "--spring.datasource.driver-class-name=org.h2.Driver",
+            "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+            // Скрипт перехода на последовательности написан для PostgreSQL
+            "--spring.sql.init.mode=never"
+    );
+
+    private Path jar = Path.of("target", "auth-service-1.0-SNAPSHOT.jar");
+    private int runs = 5;
+    private List<String> modes = Arrays.asList("baseline", "prod", "prod+cds", "prod+aot", "prod+aot+cds");
+    private List<String> jvmArgs = new ArrayList<>();
+    private final List<String> springArgs = new ArrayList<>(DEFAULT_SPRING_ARGS);
+
+    private final Path workDir = Path.of("target", "startup");
+    private List<String> classpath;
+    private boolean aotAvailable;
+
+    private StartupBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        StartupBenchmark benchmark = new StartupBenchmark();
+        benchmark.parseArgs(args);
+        benchmark.run();
+    }
+
+    private void parseArgs(String[] args) {
+        for (String arg : args) {
+            String[] pair = arg.startsWith("--") ? arg.substring(2).split("=", 2) : new String[0];
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Ожидался аргумент вида --key=value: " + arg);
+            }
+            switch (pair[0]) {
+                case "jar":
+                    jar = Path.of(pair[1]);
+                    break;
+                case "runs":
+                    runs = Integer.parseInt(pair[1]);
+                    break;
+                case "modes":
+                    modes = Arrays.asList(pair[1].split(","));
+                    break;
+                case "jvm-args":
+                    jvmArgs = Arrays.asList(pair[1].trim().split("\\s+"));
+                    break;
+                default:
+                    springArgs.add(arg);
+            }
+        }
+    }
+
+    private void run() throws Exception {
+        if (!Files.isRegularFile(jar)) {
+            throw new IllegalStateException("Нет " + jar + ": сначала mvn package (или mvn -Paot package)");
+        }
+        unpack();
+        Map<String, List<Map<String, Long>>> results = new LinkedHashMap<>();
+        for (String mode : modes) {
+            boolean aot = mode.contains("+aot");
+            if (aot && !aotAvailable) {
+                System.out.printf("%s: пропущен, jar собран без -Paot%n", mode);
+                continue;
+            }
+            List<String> jvm = new ArrayList<>(jvmArgs);
+            if (aot) {
+                jvm.add("-Dspring.aot.enabled=true");
+            }
+            if (mode.contains("+cds")) {
+                Path archive = workDir.resolve(mode.replace('+', '-') + ".jsa").toAbsolutePath();
+                train(mode, jvm, archive);
+                jvm.add("-XX:SharedArchiveFile=" + archive);
+            }
+            List<Map<String, Long>> samples = new ArrayList<>();
+            for (int i = 0; i < runs; i++) {
+                samples.add(launch(mode, jvm, i));
+            }
+            results.put(mode, samples);
+        }
+        print(results);
+    }
+
+    /**
+     * Раскладывает исполняемый jar на jar с классами приложения и библиотеки; драйвер H2 берется из classpath
+     * самого бенчмарка (в сборку он не входит).
+     */
+    private void unpack() throws IOException {
+        Path lib = workDir.resolve("lib");
+        Files.createDirectories(lib);
+        Path appJar = workDir.resolve("app.jar");
+        List<String> entries = new ArrayList<>();
+        entries.add(appJar.toAbsolutePath().toString());
+        try (JarFile boot = new JarFile(jar.toFile());
+             JarOutputStream app = new JarOutputStream(Files.newOutputStream(appJar))) {
+            Enumeration<JarEntry> jarEntries = boot.entries();
+            while (jarEntries.hasMoreElements()) {
+                JarEntry entry = jarEntries.nextElement();
+                String name = entry.getName();
+                if (name.startsWith("BOOT-INF/classes/") && name.length() > "BOOT-INF/classes/".length()) {
+                    // Каталоги тоже переносятся: без них сканирование пакетов Spring не находит классы в jar
+                    String className = name.substring("BOOT-INF/classes/".length());
+                    aotAvailable |= className.equals(AOT_INITIALIZER);
+                    app.putNextEntry(new JarEntry(className));
+                    if (!entry.isDirectory()) {
+                        try (InputStream in = boot.getInputStream(entry)) {
+                            in.transferTo(app);
+                        }
+                    }
+                    app.closeEntry();
+                } else if (name.startsWith("BOOT-INF/lib/") && !entry.isDirectory()) {
+                    Path target = lib.resolve(name.substring("BOOT-INF/lib/".length()));
+                    try (InputStream in = boot.getInputStream(entry); OutputStream out = Files.newOutputStream(target)) {
+                        in.transferTo(out);
+                    }
+                    entries.add(target.toAbsolutePath().toString());
+                }
+            }
+        }
+        String h2 = Arrays.stream(System.getProperty("java.class.path").split(File.pathSeparator))
+                .filter(path -> Path.of(path).getFileName().toString().startsWith("h2-"))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("Драйвер H2 не найден в classpath бенчмарка"));
+        entries.add(h2);
+        classpath = entries;
+    }
+
+    /**
+     * Обучающий запуск для CDS: контекст поднимается до конца обновления, после чего процесс завершается
+     * и JVM записывает загруженные классы в архив.
+     */
+    private void train(String mode, List<String> jvm, Path archive) throws IOException, InterruptedException {
+        Files.deleteIfExists(archive);
+        List<String> trainingJvm = new ArrayList<>(jvm);
+        trainingJvm.add("-XX:ArchiveClassesAtExit=" + archive);
+        trainingJvm.add("-Dspring.context.exit=onRefresh");
+        Process process = start(mode, trainingJvm, "cds");
+        drain(process.getInputStream());
+        if (!process.waitFor(READY_TIMEOUT_SECONDS, TimeUnit.SECONDS) || !Files.isRegularFile(archive)) {
+            process.destroyForcibly();
+            throw new IllegalStateException(mode + ": не удалось записать CDS архив " + archive);
+        }
+    }
+
+    private Map<String, Long> launch(String mode, List<String> jvm, int run) throws Exception {
+        long start = System.nanoTime();
+        Process process = start(mode, jvm, String.valueOf(run));
+        try {
+            CompletableFuture<String> ready = new CompletableFuture<>();
+            Thread reader = new Thread(() -> readUntilReady(process.getInputStream(), ready), "startup-output");
+            reader.setDaemon(true);
+            reader.start();
+            String line = ready.get(READY_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            long wallMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            Map<String, Long> sample = new HashMap<>();
+            Map<String, String> report = parseReport(line);
+            sample.put("wall_ms", wallMs);
+            sample.put("ready_ms", Long.parseLong(report.get("ready_ms")));
+            sample.put("context_ms", Long.parseLong(report.get("context_ms")));
+            sample.put("rss_kb", Long.parseLong(report.get("rss_kb")));
+            sample.put("classes", Long.parseLong(report.get("classes")));
+            sample.put("beans", Long.parseLong(report.get("beans").split("/")[0]));
+
+            AuthClient client = new AuthClient("http://localhost:" + report.get("port"));
+            long loginStart = System.nanoTime();
+            if (!client.login(new AuthClient.Session("admin", "secure_pass"))) {
+                throw new IllegalStateException(mode + ": не удалось войти под admin");
+            }
+            sample.put("first_login_ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - loginStart));
+            sample.put("rss_after_login_kb", residentSetKb(process.pid()));
+            System.out.printf("%s #%d: %s%n", mode, run + 1, sample);
+            return sample;
+        } finally {
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    private Process start(String mode, List<String> jvm, String database) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvm);
+        command.add("-cp");
+        command.add(String.join(File.pathSeparator, classpath));
+        command.add(MAIN_CLASS);
+        command.addAll(springArgs);
+        command.add("--spring.datasource.url=jdbc:h2:mem:startup_" + database
+                + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH;DB_CLOSE_DELAY=-1");
+        if (mode.startsWith("prod")) {
+            command.add("--spring.profiles.active=prod");
+        } else {
+            command.add("--spring.jpa.hibernate.ddl-auto=update");
+        }
+        return new ProcessBuilder(command).redirectErrorStream(true).start();
+    }
+
+    /**
+     * Читает вывод процесса до строки готовности и дальше до конца: иначе процесс встанет на заполненном pipe.
+     */
+    private static void readUntilReady(InputStream output, CompletableFuture<String> ready) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(output, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!ready.isDone() && line.contains(READY_MARKER)) {
+                    ready.complete(line);
+                } else if (!ready.isDone() && (line.contains("ERROR") || line.contains("Exception"))) {
+                    System.out.println(line);
+                }
+            }
+        } catch (IOException e) {
+            ready.completeExceptionally(e);
+        }
+        ready.completeExceptionally(new IllegalStateException("Процесс завершился, не дойдя до готовности"));
+    }
+
+    private static void drain(InputStream output) throws IOException {
+        output.transferTo(OutputStream.nullOutputStream());
+    }
+
+    private static Map<String, String> parseReport(String line) {
+        Map<String, String> report = new HashMap<>();
+        for (String token : line.substring(line.indexOf(READY_MARKER) + READY_MARKER.length()).trim().split("\\s+")) {
+            String[] pair = token.split("=", 2);
+            if (pair.length == 2) {
+                report.put(pair[0], pair[1]);
+            }
+        }
+        return report;
+    }
+
+    private static long residentSetKb(long pid) throws IOException {
+        Path status = Path.of("/proc", String.valueOf(pid), "status");
+        if (!Files.isReadable(status)) {
+            return -1;
+        }
+        return Files.readAllLines(status).stream()
+                .filter(line -> line.startsWith("VmRSS:"))
+                .map(line -> Long.parseLong(line.replaceAll("\\D", "")))
+                .findFirst()
+                .orElse(-1L);
+    }
+
+    private void print(Map<String, List<Map<String, Long>>> results) {
+        System.out.printf("%nМедианы по %d запускам%n", runs);
+        System.out.printf("%-14s %9s %9s %11s %9s %14s %16s %8s %7s%n", "режим", "wall_ms", "ready_ms",
+                "context_ms", "rss_mb", "first_login_ms", "rss_login_mb", "classes", "beans");
+        for (Map.Entry<String, List<Map<String, Long>>> entry : results.entrySet()) {
+            List<Map<String, Long>> samples = entry.getValue();
+            System.out.printf("%-14s %9d %9d %11d %9.1f %14d %16.1f %8d %7d%n", entry.getKey(),
+                    median(samples, "wall_ms"), median(samples, "ready_ms"), median(samples, "context_ms"),
+                    median(samples, "rss_kb") / 1024.0, median(samples, "first_login_ms"),
+                    median(samples, "rss_after_login_kb") / 1024.0, median(samples, "classes"),
+                    median(samples, "beans"));
+        }
+    }
+
+    private static long median(List<Map<String, Long>> samples, String key) {
+        List<Long> values = samples.stream().map(sample -> sample.get(key)).sorted().collect(Collectors.toList());
+        return values.isEmpty() ? 0 : values.get(values.size() / 2);
+    }
+}
@@ -0,0 +1,63 @@
+package db.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Уникальность логина и email без учета регистра.
+ * Удаляет все одностолбцовые уникальные ограничения на users.login и users.email, в том числе с именами,
+ * которые Hibernate сгенерировал в базах, созданных через ddl-auto: по такому имени регистрация не понимает,
+ * что занято. Затем нормализует уже записанные значения (db/normalize-logins.sql) и строит уникальные индексы
+ * по lower(): они защищают и от строк, записанных в обход приложения.
+ * На Java, а не на SQL: имена старых ограничений заранее неизвестны и берутся из information_schema.
+ */
+public class V3__Case_insensitive_logins extends BaseJavaMigration {
+
+    private static final String FIND_UNIQUE_CONSTRAINTS = "select tc.constraint_name "
+            + "from information_schema.table_constraints tc "
+            + "join information_schema.key_column_usage kcu on kcu.constraint_schema = tc.constraint_schema "
+            + "and kcu.constraint_name = tc.constraint_name "
+            + "where tc.table_schema = current_schema and tc.table_name = 'users' and tc.constraint_type = 'UNIQUE' "
+            + "group by tc.constraint_name "
+            + "having count(*) = 1 and max(kcu.column_name) in ('login', 'email')";
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        Connection connection = context.getConnection();
+        try (Statement statement = connection.createStatement()) {
+            for (String constraint : uniqueConstraints(statement)) {
+                statement.execute("alter table users drop constraint \"" + constraint + "\"");
+            }
+            ScriptUtils.executeSqlScript(connection, new ClassPathResource("db/normalize-logins.sql"));
+            if ("PostgreSQL".equals(connection.getMetaData().getDatabaseProductName())) {
+                // if not exists: база из профиля dev уже может иметь эти индексы (db/case-insensitive-logins-postgresql.sql)
+                statement.execute("create unique index if not exists uk_users_login_lower on users (lower(login))");
+                statement.execute("create unique index if not exists uk_users_email_lower on users (lower(email))");
+            } else {
+                // H2 (проверка миграций в тестах) не строит индексы по выражениям. Значения уже нормализованы,
+                // а приложение пишет только нормализованные, поэтому обычное ограничение дает ту же уникальность
+                statement.execute("alter table users add constraint uk_users_login_lower unique (login)");
+                statement.execute("alter table users add constraint uk_users_email_lower unique (email)");
+            }
+        }
+    }
+
+    private static List<String> uniqueConstraints(Statement statement) throws SQLException {
+        List<String> constraints = new ArrayList<>();
+        try (ResultSet rows = statement.executeQuery(FIND_UNIQUE_CONSTRAINTS)) {
+            while (rows.next()) {
+                constraints.add(rows.getString(1));
+            }
+        }
+        return constraints;
+    }
+}
@@ -0,0 +1,202 @@
+package ru.auth.config;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.auth.security.AuthUserDetails;
+import ru.auth.service.RoleHierarchyChangedEvent;
+import ru.auth.service.UserChangedEvent;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Кэш поверх {@link CustomUserDetailsService} для проверки токенов в фильтре.
+ * Записи живут auth.user-cache.ttl-ms, неизвестные логины запоминаются на auth.user-cache.negative-ttl-ms.
+ * Параллельные запросы одного и того же логина ждут одну загрузку из базы.
+ * При переполнении вытесняются редко используемые записи (Caffeine, W-TinyLFU), без обхода всего кэша.
+ * Логин при входе (AuthenticationManager) кэш не использует: пароль всегда сверяется со свежими данными.
+ */
+@Service
+public class CachingUserDetailsService implements UserDetailsService, MeterBinder {
+
+    private final CustomUserDetailsService delegate;
+    // Значение - незавершенная загрузка или ее результат; упавшая загрузка удаляется из кэша сама
+    private final AsyncCache<String, Loaded> cache;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    @Autowired
+    public CachingUserDetailsService(CustomUserDetailsService delegate,
+                                     @Value("${auth.user-cache.max-size:10000}") int maxSize,
+                                     @Value("${auth.user-cache.ttl-ms:60000}") long ttlMs,
+                                     @Value("${auth.user-cache.negative-ttl-ms:5000}") long negativeTtlMs) {
+        this(delegate, maxSize, ttlMs, negativeTtlMs, Ticker.systemTicker());
+    }
+
+    CachingUserDetailsService(CustomUserDetailsService delegate, int maxSize, long ttlMs, long negativeTtlMs,
+                              Ticker ticker) {
+        this.delegate = delegate;
+        // Срок записи считается от завершения загрузки: пока загрузка идет, запись не истекает
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<String, Loaded>() {
+                    @Override
+                    public long expireAfterCreate(String login, Loaded loaded, long currentTime) {
+                        return TimeUnit.MILLISECONDS.toNanos(loaded.userDetails != null ? ttlMs : negativeTtlMs);
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String login, Loaded loaded, long currentTime, long currentDuration) {
+                        return expireAfterCreate(login, loaded, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String login, Loaded loaded, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .evictionListener((login, loaded, cause) -> evictions.increment())
+                .ticker(ticker)
+                .buildAsync();
+    }
+
+    /**
+     * Возвращает пользователя из кэша или загружает его из базы.
+     * @param login Логин пользователя.
+     * @return UserDetails объект, содержащий информацию о пользователе.
+     * @throws UsernameNotFoundException если пользователь с таким логином не найден.
+     */
+    @Override
+    public UserDetails loadUserByUsername(String login) throws UsernameNotFoundException {
+        CompletableFuture<Loaded> entry = cache.getIfPresent(login);
+        if (entry == null) {
+            CompletableFuture<Loaded> created = new CompletableFuture<>();
+            entry = cache.asMap().putIfAbsent(login, created);
+            if (entry == null) {
+                misses.increment();
+                load(login, created);
+                return await(created);
+            }
+        }
+        hits.increment();
+        return await(entry);
+    }
+
+    private void load(String login, CompletableFuture<Loaded> entry) {
+        try {
+            entry.complete(new Loaded(delegate.loadUserByUsername(login), null));
+        } catch (UsernameNotFoundException e) {
+            entry.complete(new Loaded(null, e));
+        } catch (RuntimeException e) {
+            // Ошибки базы не кэшируем: ждущие потоки получат исключение, следующий запрос загрузит заново
+            entry.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Сбрасывает запись пользователя.
+     * @param login Логин пользователя.
+     */
+    public void invalidate(String login) {
+        cache.synchronous().invalidate(login);
+    }
+
+    /**
+     * Сбрасывает весь кэш.
+     */
+    public void invalidateAll() {
+        cache.synchronous().invalidateAll();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        invalidate(event.getLogin());
+    }
+
+    /**
+     * Сбрасывает пользователей, у которых есть хотя бы одна из ролей с изменившимися правами.
+     * Загрузки, еще не завершившиеся, тоже сбрасываются: они могли взять права из старой иерархии.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRoleHierarchyChanged(RoleHierarchyChangedEvent event) {
+        long affected = event.getAffectedRoleMask();
+        cache.asMap().values().removeIf(entry -> {
+            if (!entry.isDone()) {
+                return true;
+            }
+            if (entry.isCompletedExceptionally()) {
+                return false;
+            }
+            UserDetails userDetails = entry.getNow(null).userDetails;
+            return userDetails instanceof AuthUserDetails && (((AuthUserDetails) userDetails).getRoleMask() & affected) != 0L;
+        });
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("auth.user.cache.requests", hits, LongAdder::sum)
+                .tag("result", "hit").register(registry);
+        FunctionCounter.builder("auth.user.cache.requests", misses, LongAdder::sum)
+                .tag("result", "miss").register(registry);
+        FunctionCounter.builder("auth.user.cache.evictions", evictions, LongAdder::sum).register(registry);
+        Gauge.builder("auth.user.cache.size", cache, c -> c.synchronous().estimatedSize()).register(registry);
+    }
+
+    private static UserDetails await(CompletableFuture<Loaded> entry) {
+        Loaded loaded;
+        try {
+            loaded = entry.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+        if (loaded.notFound != null) {
+            throw new UsernameNotFoundException(loaded.notFound.getMessage(), loaded.notFound);
+        }
+        return loaded.userDetails;
+    }
+
+    /**
+     * Результат загрузки: пользователь или запомненное отсутствие логина.
+     */
+    private static final class Loaded {
+        private final UserDetails userDetails;
+        private final UsernameNotFoundException notFound;
+
+        private Loaded(UserDetails userDetails, UsernameNotFoundException notFound) {
+            this.userDetails = userDetails;
+            this.notFound = notFound;
+        }
+    }
+}
@@ -1,29 +1,37 @@
 package ru.auth.config;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import ru.auth.model.Role;
 import ru.auth.model.User;
+import ru.auth.repository.UserCredentials;
 import ru.auth.repository.UserRepository;
+import ru.auth.security.AuthUserDetails;
+import ru.auth.security.RoleRegistry;
+import ru.auth.service.RoleHierarchyService;
+import ru.auth.service.UserChangedEvent;
 
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
-import java.util.Set;
 
 @Service
 public class CustomUserDetailsService implements UserDetailsService {
 
     private final UserRepository userRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final RoleHierarchyService roleHierarchyService;
 
     @Autowired
-    public CustomUserDetailsService(UserRepository userRepository) {
+    public CustomUserDetailsService(UserRepository userRepository, ApplicationEventPublisher eventPublisher,
+                                    RoleHierarchyService roleHierarchyService) {
         this.userRepository = userRepository;
+        this.eventPublisher = eventPublisher;
+        this.roleHierarchyService = roleHierarchyService;
     }
 
     /**
@@ -31,23 +39,33 @@ public class CustomUserDetailsService implements UserDetailsService {
      * во время аутентификации.
      * @param login Логин пользователя, который пытается аутентифицироваться.
      * @return UserDetails объект, содержащий информацию о пользователе.
+     * Пользователь читается проекцией одним запросом, без загрузки сущностей и их снимков для dirty checking.
      * @throws UsernameNotFoundException если пользователь с таким логином не найден.
      */
     @Override
-    @Transactional
+    @Transactional(readOnly = true)
     public UserDetails loadUserByUsername(String login) throws UsernameNotFoundException {
-        User user = userRepository.findByLogin(login)
-                .orElseThrow(() -> new UsernameNotFoundException("Юзер не найден: " + login));
+        List<UserCredentials> rows = userRepository.findCredentialsByLogin(User.normalize(login));
+        if (rows.isEmpty()) {
+            throw new UsernameNotFoundException("Юзер не найден: " + login);
+        }
 
-        Set<GrantedAuthority> authorities = new HashSet<>();
-        for (Role role : user.getRoles()) {
-            authorities.add(new SimpleGrantedAuthority("ROLE_" + role.getName().toUpperCase()));
+        List<String> roleNames = new ArrayList<>(rows.size());
+        for (UserCredentials row : rows) {
+            if (row.getRoleName() != null) {
+                roleNames.add(RoleRegistry.authority(row.getRoleName()).getName());
+            }
         }
 
-        return new org.springframework.security.core.userdetails.User(
+        // Унаследованные роли и разрешения берутся из иерархии в памяти, без дополнительных запросов
+        UserCredentials user = rows.get(0);
+        return new AuthUserDetails(
                 user.getLogin(),
                 user.getPassword(),
-                authorities
+                user.isEnabled(),
+                roleHierarchyService.authorities(roleNames),
+                roleNames,
+                user.getTokenVersion()
         );
     }
 
@@ -56,6 +74,8 @@ public class CustomUserDetailsService implements UserDetailsService {
     }
 
     public User saveUser(User user) {
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        eventPublisher.publishEvent(new UserChangedEvent(saved.getLogin()));
+        return saved;
     }
 }
@@ -4,55 +4,43 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.security.crypto.password.PasswordEncoder;
-import ru.auth.model.Role;
+import org.springframework.jdbc.core.JdbcTemplate;
 import ru.auth.model.User;
-import ru.auth.repository.RoleRepository;
-import ru.auth.repository.UserRepository;
-
-import java.util.Optional;
 
 @Configuration
 public class DataLoader {
 
-    @Autowired
-    private RoleRepository roleRepository;
-
-    @Autowired
-    private UserRepository userRepository;
+    /**
+     * Хэш пароля первого админа (secure_pass, BCrypt со стоимостью 10), посчитан заранее: при старте пароль
+     * не хэшируется. Если в auth.password.* настроен другой алгоритм или стоимость, хэш обновится при первом входе.
+     */
+    static final String ADMIN_PASSWORD_HASH = "{bcrypt}$2a$10$CIW.ggue6NcnutrkZrKVQOoWLJP.FJ2Rqvo052aTqY6WvOGzciMBG";
+
+    // Каждая вставка ничего не делает, если строка уже есть, в том числе когда несколько узлов стартуют одновременно.
+    // Id берется из той же последовательности, что и у Hibernate: одно значение nextval занимает целый блок
+    private static final String INSERT_ROLES = "insert into roles (id, name) "
+            + "select nextval('roles_seq'), v.name from (values ('ADMIN'), ('PREMIUM_USER'), ('GUEST')) as v(name) "
+            + "where not exists (select 1 from roles r where r.name = v.name) on conflict do nothing";
+    private static final String INSERT_ADMIN = "insert into users (id, login, password, email, enabled, token_version) "
+            + "select nextval('" + User.ID_SEQUENCE + "'), 'admin', '" + ADMIN_PASSWORD_HASH + "', 'admin@test.ru', true, 0 "
+            + "where not exists (select 1 from users u where u.login = 'admin') on conflict do nothing";
+    // Роль выдается только что созданному админу: у админа, которому роли меняли, token_version уже больше 0
+    private static final String INSERT_ADMIN_ROLE = "insert into user_roles (user_id, role_id) "
+            + "select u.id, r.id from users u join roles r on r.name = 'ADMIN' "
+            + "where u.login = 'admin' and u.token_version = 0 "
+            + "and not exists (select 1 from user_roles ur where ur.user_id = u.id) on conflict do nothing";
 
     @Autowired
-    private PasswordEncoder passwordEncoder;
+    private JdbcTemplate jdbcTemplate;
 
     // Выполняем код сразу после запуска прилжения
     @Bean
     public CommandLineRunner initDatabase() {
         return args -> {
-            // Добавляем роли, если их нет
-            if (roleRepository.findByName("ADMIN").isEmpty()) {
-                roleRepository.save(new Role("ADMIN"));
-            }
-            if (roleRepository.findByName("PREMIUM_USER").isEmpty()) {
-                roleRepository.save(new Role("PREMIUM_USER"));
-            }
-            if (roleRepository.findByName("GUEST").isEmpty()) {
-                roleRepository.save(new Role("GUEST"));
-            }
-
-            // Добавляем первого админа, если он не существует
-            String adminLogin = "admin";
-            if (userRepository.findByLogin(adminLogin).isEmpty()) {
-                User admin = new User();
-                admin.setLogin(adminLogin);
-                admin.setPassword(passwordEncoder.encode("secure_pass"));
-                admin.setEmail("admin@test.ru");
-
-                // Находим роль ADMIN и добавляем ее пользователю
-                Optional<Role> adminRoleOpt = roleRepository.findByName("ADMIN");
-                adminRoleOpt.ifPresent(admin::addRole);
-
-                userRepository.save(admin);
-
+            // Роли и первый админ добавляются, если их нет: три идемпотентные вставки одним пакетом,
+            // один запрос к базе вместо поиска каждой роли и админа по отдельности
+            int[] inserted = jdbcTemplate.batchUpdate(INSERT_ROLES, INSERT_ADMIN, INSERT_ADMIN_ROLE);
+            if (inserted[1] > 0) {
                 System.out.println("Пользователь admin успешно создан");
             }
         };
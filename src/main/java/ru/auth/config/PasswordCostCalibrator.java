@@ -0,0 +1,98 @@
+package ru.auth.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+/**
+ * Калибровка стоимости хэширования на текущем железе (auth.password.calibration.enabled=true).
+ * После старта замеряет время хэширования выбранным алгоритмом и пишет в лог стоимость,
+ * которая укладывается в auth.password.calibration.target-ms. Настройки не меняет.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "auth.password.calibration.enabled", havingValue = "true")
+public class PasswordCostCalibrator {
+
+    private static final String SAMPLE_PASSWORD = "calibration-Passw0rd";
+    private static final int SAMPLES = 3;
+
+    private final String algorithm;
+    private final long targetMs;
+    private final int bcryptStrength;
+    private final int pbkdf2Iterations;
+    private final int argon2MemoryKb;
+    private final int argon2Iterations;
+
+    public PasswordCostCalibrator(@Value("${auth.password.algorithm:bcrypt}") String algorithm,
+                                  @Value("${auth.password.calibration.target-ms:250}") long targetMs,
+                                  @Value("${auth.password.bcrypt.strength:10}") int bcryptStrength,
+                                  @Value("${auth.password.pbkdf2.iterations:310000}") int pbkdf2Iterations,
+                                  @Value("${auth.password.argon2.memory-kb:19456}") int argon2MemoryKb,
+                                  @Value("${auth.password.argon2.iterations:2}") int argon2Iterations) {
+        this.algorithm = algorithm;
+        this.targetMs = targetMs;
+        this.bcryptStrength = bcryptStrength;
+        this.pbkdf2Iterations = pbkdf2Iterations;
+        this.argon2MemoryKb = argon2MemoryKb;
+        this.argon2Iterations = argon2Iterations;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void calibrate() {
+        switch (algorithm) {
+            case PasswordEncoderConfig.BCRYPT:
+                calibrateBcrypt();
+                break;
+            case PasswordEncoderConfig.PBKDF2:
+                // Время PBKDF2 линейно по числу итераций
+                double pbkdf2Ms = measure(PasswordEncoderConfig.pbkdf2(pbkdf2Iterations));
+                log.info("Калибровка pbkdf2: {} итераций = {} мс, для {} мс рекомендуется {} итераций",
+                        pbkdf2Iterations, format(pbkdf2Ms), targetMs, (long) (pbkdf2Iterations * targetMs / pbkdf2Ms));
+                break;
+            case PasswordEncoderConfig.ARGON2:
+                // При фиксированной памяти время Argon2 линейно по числу проходов
+                double argon2Ms = measure(PasswordEncoderConfig.argon2(argon2MemoryKb, argon2Iterations));
+                log.info("Калибровка argon2: память {} КБ, {} проходов = {} мс, для {} мс рекомендуется {} проходов",
+                        argon2MemoryKb, argon2Iterations, format(argon2Ms), targetMs,
+                        Math.max(1, (long) (argon2Iterations * targetMs / argon2Ms)));
+                break;
+            default:
+                log.warn("Калибровка для алгоритма {} не поддерживается", algorithm);
+        }
+    }
+
+    private void calibrateBcrypt() {
+        // Каждая единица стоимости BCrypt удваивает время, поэтому идем вверх, пока не превысим цель
+        int recommended = 4;
+        for (int strength = 4; strength <= 31; strength++) {
+            double ms = measure(new BCryptPasswordEncoder(strength));
+            log.info("Калибровка bcrypt: стоимость {} = {} мс", strength, format(ms));
+            if (ms > targetMs) {
+                break;
+            }
+            recommended = strength;
+        }
+        log.info("Калибровка bcrypt: для {} мс рекомендуется стоимость {} (сейчас {})",
+                targetMs, recommended, bcryptStrength);
+    }
+
+    private static double measure(PasswordEncoder encoder) {
+        // Первый вызов прогревает код и не учитывается
+        encoder.encode(SAMPLE_PASSWORD);
+        long started = System.nanoTime();
+        for (int i = 0; i < SAMPLES; i++) {
+            encoder.encode(SAMPLE_PASSWORD);
+        }
+        return (System.nanoTime() - started) / 1_000_000.0 / SAMPLES;
+    }
+
+    private static String format(double ms) {
+        return String.format("%.1f", ms);
+    }
+}
@@ -0,0 +1,54 @@
+package ru.auth.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Кодировщик паролей из настроек auth.password.*.
+ * Новые хэши пишутся алгоритмом auth.password.algorithm с префиксом {id},
+ * старые хэши без префикса проверяются как BCrypt и обновляются при следующем входе.
+ */
+@Configuration
+public class PasswordEncoderConfig {
+
+    public static final String BCRYPT = "bcrypt";
+    public static final String ARGON2 = "argon2";
+    public static final String PBKDF2 = "pbkdf2";
+
+    @Bean
+    public PasswordEncoder passwordEncoder(@Value("${auth.password.algorithm:bcrypt}") String algorithm,
+                                           @Value("${auth.password.bcrypt.strength:10}") int bcryptStrength,
+                                           @Value("${auth.password.pbkdf2.iterations:310000}") int pbkdf2Iterations,
+                                           @Value("${auth.password.argon2.memory-kb:19456}") int argon2MemoryKb,
+                                           @Value("${auth.password.argon2.iterations:2}") int argon2Iterations) {
+        Map<String, PasswordEncoder> encoders = new HashMap<>();
+        encoders.put(BCRYPT, new BCryptPasswordEncoder(bcryptStrength));
+        encoders.put(ARGON2, argon2(argon2MemoryKb, argon2Iterations));
+        encoders.put(PBKDF2, pbkdf2(pbkdf2Iterations));
+        if (!encoders.containsKey(algorithm)) {
+            throw new IllegalArgumentException("Неизвестный алгоритм хэширования паролей: " + algorithm);
+        }
+
+        DelegatingPasswordEncoder encoder = new DelegatingPasswordEncoder(algorithm, encoders);
+        // Хэши, записанные до появления префиксов, - это BCrypt
+        encoder.setDefaultPasswordEncoderForMatches(new BCryptPasswordEncoder());
+        return encoder;
+    }
+
+    static PasswordEncoder argon2(int memoryKb, int iterations) {
+        return new Argon2PasswordEncoder(16, 32, 1, memoryKb, iterations);
+    }
+
+    static PasswordEncoder pbkdf2(int iterations) {
+        // Число итераций хранится в хэше: при его увеличении старые хэши обновляются при входе
+        return new Pbkdf2IterationsPasswordEncoder(iterations);
+    }
+}
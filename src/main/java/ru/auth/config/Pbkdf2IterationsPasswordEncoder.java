@@ -0,0 +1,74 @@
+package ru.auth.config;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.crypto.password.Pbkdf2PasswordEncoder;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * PBKDF2 с числом итераций в самом хэше: "310000$<hex соль и хэш>".
+ * Стандартный {@link Pbkdf2PasswordEncoder} итерации не сохраняет, поэтому не может ни проверить хэш,
+ * записанный с другим числом итераций, ни сказать, что хэш пора обновить.
+ * Хэши без числа итераций (записанные до этого формата) проверяются с текущим числом и всегда считаются устаревшими.
+ */
+class Pbkdf2IterationsPasswordEncoder implements PasswordEncoder {
+
+    private static final char SEPARATOR = '$';
+
+    private final int iterations;
+    private final Pbkdf2PasswordEncoder current;
+    // Кодировщики для хэшей со старым числом итераций; разных значений на практике единицы
+    private final Map<Integer, Pbkdf2PasswordEncoder> byIterations = new ConcurrentHashMap<>();
+
+    Pbkdf2IterationsPasswordEncoder(int iterations) {
+        this.iterations = iterations;
+        this.current = create(iterations);
+        byIterations.put(iterations, current);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return iterations + String.valueOf(SEPARATOR) + current.encode(rawPassword);
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        if (encodedPassword == null) {
+            return false;
+        }
+        int separator = encodedPassword.indexOf(SEPARATOR);
+        if (separator < 0) {
+            return current.matches(rawPassword, encodedPassword);
+        }
+        int hashIterations = parseIterations(encodedPassword, separator);
+        if (hashIterations <= 0) {
+            return false;
+        }
+        return byIterations.computeIfAbsent(hashIterations, Pbkdf2IterationsPasswordEncoder::create)
+                .matches(rawPassword, encodedPassword.substring(separator + 1));
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        if (encodedPassword == null) {
+            return false;
+        }
+        int separator = encodedPassword.indexOf(SEPARATOR);
+        return separator < 0 || parseIterations(encodedPassword, separator) < iterations;
+    }
+
+    private static int parseIterations(String encodedPassword, int separator) {
+        try {
+            return Integer.parseInt(encodedPassword, 0, separator, 10);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static Pbkdf2PasswordEncoder create(int iterations) {
+        // Длина хэша берется из алгоритма: 256 бит для HmacSHA256, как и раньше
+        return new Pbkdf2PasswordEncoder("", 16, iterations,
+                Pbkdf2PasswordEncoder.SecretKeyFactoryAlgorithm.PBKDF2WithHmacSHA256);
+    }
+}
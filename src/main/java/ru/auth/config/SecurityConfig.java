@@ -1,63 +1,114 @@
 package ru.auth.config;
 
+import org.springframework.aop.Advisor;
+import org.springframework.aop.Pointcut;
+import org.springframework.aop.support.Pointcuts;
+import org.springframework.aop.support.annotation.AnnotationMatchingPointcut;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanDefinition;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Role;
 import org.springframework.security.authentication.AuthenticationManager;
-import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
-import org.springframework.security.config.annotation.method.configuration.EnableGlobalMethodSecurity;
+import org.springframework.security.authentication.ProviderManager;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.authorization.method.AuthorizationManagerBeforeMethodInterceptor;
+import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
-import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
+import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import ru.auth.security.JwtRequestFilter;
+import ru.auth.security.PathAuthorizationManager;
+import ru.auth.security.RequiresRole;
+import ru.auth.security.RoleMethodAuthorizationManager;
 
 @Configuration
 @EnableWebSecurity
-@EnableGlobalMethodSecurity(prePostEnabled = true)
-public class SecurityConfig extends WebSecurityConfigurerAdapter {
+@EnableMethodSecurity
+public class SecurityConfig {
 
     private final CustomUserDetailsService userDetailsService;
 
     private final JwtRequestFilter jwtRequestFilter;
 
+    private final PasswordEncoder passwordEncoder;
+
+    private final boolean separateManagementPort;
+
+    /**
+     * @param serverPort Порт приложения.
+     * @param managementPort Порт actuator; если он задан и отличается от порта приложения, метрики открыты на нем.
+     */
     @Autowired
-    public SecurityConfig(CustomUserDetailsService userDetailsService, JwtRequestFilter jwtRequestFilter) {
+    public SecurityConfig(CustomUserDetailsService userDetailsService, JwtRequestFilter jwtRequestFilter,
+                          PasswordEncoder passwordEncoder,
+                          @Value("${server.port:8080}") int serverPort,
+                          @Value("${management.server.port:-1}") int managementPort) {
         this.userDetailsService = userDetailsService;
         this.jwtRequestFilter = jwtRequestFilter;
+        this.passwordEncoder = passwordEncoder;
+        this.separateManagementPort = managementPort > 0 && managementPort != serverPort;
     }
 
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public AuthenticationManager authenticationManager() {
+        DaoAuthenticationProvider provider = new DaoAuthenticationProvider();
+        provider.setUserDetailsService(userDetailsService);
+        provider.setPasswordEncoder(passwordEncoder);
+        ProviderManager authenticationManager = new ProviderManager(provider);
+        // Хэш пароля нужен после входа, чтобы решить, пора ли его перехэшировать (PasswordUpgradeService)
+        authenticationManager.setEraseCredentialsAfterAuthentication(false);
+        return authenticationManager;
     }
 
+    /**
+     * Правила доступа по путям. Компилируются в префиксное дерево, роль проверяется по биту в маске пользователя.
+     * Все, что не перечислено, требует аутентификации.
+     * Метрики выдают нагрузку и отказы по эндпоинтам, поэтому на порту приложения они только для ADMIN.
+     * Без аутентификации они доступны, только когда actuator вынесен на отдельный management.server.port:
+     * тогда на порту приложения /actuator не обслуживается, а порт actuator закрывается от внешней сети.
+     */
     @Bean
-    @Override
-    public AuthenticationManager authenticationManagerBean() throws Exception {
-        return super.authenticationManagerBean();
+    public PathAuthorizationManager pathAuthorizationManager() {
+        PathAuthorizationManager.Builder builder = PathAuthorizationManager.builder()
+                .permitAll("/auth/register", "/auth/login", "/auth/refresh", "/.well-known/jwks.json")
+                .permitAll("/auth/introspect", "/auth/introspect/batch") // доступ проверяет сам контроллер по ключу
+                .permitAll("/actuator/health") // для балансировщика
+                .permitAll("/error");
+        if (separateManagementPort) {
+            builder.permitAll("/actuator/prometheus");
+        } else {
+            builder.hasAnyRole("/actuator/prometheus", "ADMIN");
+        }
+        return builder
+                .hasAnyRole("/api/admin/**", "ADMIN") // /api/admin/ только для ADMIN
+                .hasAnyRole("/api/premium/**", "PREMIUM_USER") // /api/premium/ только для PREMIUM_USER
+                .build();
     }
 
-    @Override
-    protected void configure(HttpSecurity http) throws Exception {
+    /**
+     * Проверка {@link RequiresRole} на контроллерах и сервисах, рядом с @PreAuthorize из @EnableMethodSecurity.
+     */
+    @Bean
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    static Advisor requiresRoleAdvisor() {
+        Pointcut pointcut = Pointcuts.union(new AnnotationMatchingPointcut(RequiresRole.class, true),
+                new AnnotationMatchingPointcut(null, RequiresRole.class, true));
+        return new AuthorizationManagerBeforeMethodInterceptor(pointcut, new RoleMethodAuthorizationManager());
+    }
+
+    @Bean
+    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
         http
-                .csrf().disable()
-                .sessionManagement().sessionCreationPolicy(SessionCreationPolicy.STATELESS)
-                .and()
-                .authorizeRequests()
-                .antMatchers("/auth/register", "/auth/login").permitAll()
-                .antMatchers("/api/admin/**").hasRole("ADMIN") // /api/admin/ только для ADMIN
-                .antMatchers("/api/premium/**").hasRole("PREMIUM_USER") // /api/premium/ только для PREMIUM_USER
-                .anyRequest().authenticated() // Все остальные запросы требуют аутентификации
-                .and()
+                .csrf(AbstractHttpConfigurer::disable)
+                .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+                .authorizeHttpRequests(requests -> requests.anyRequest().access(pathAuthorizationManager()))
                 .addFilterBefore(jwtRequestFilter, UsernamePasswordAuthenticationFilter.class);
-    }
-    
-    @Override
-    protected void configure(AuthenticationManagerBuilder auth) throws Exception {
-        auth.userDetailsService(userDetailsService).passwordEncoder(passwordEncoder());
+        return http.build();
     }
 }
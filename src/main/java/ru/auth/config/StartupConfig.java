@@ -0,0 +1,90 @@
+package ru.auth.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.aot.AotDetector;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationInitializer;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.MethodIntrospector;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Настройки быстрого старта (профиль prod) и отчет о старте.
+ * При spring.main.lazy-initialization=true бины создаются при первом обращении, но бины с задачами @Scheduled
+ * должны быть созданы сразу: иначе их задачи не запустятся, пока бин кому-нибудь не понадобится.
+ */
+@Slf4j
+@Configuration
+public class StartupConfig {
+
+    private static final Path PROC_STATUS = Path.of("/proc/self/status");
+
+    /**
+     * Бины, которые создаются сразу и при ленивой инициализации: с задачами @Scheduled и миграции Flyway
+     * (схема обновляется при старте, а не при первом запросе к базе).
+     */
+    @Bean
+    static LazyInitializationExcludeFilter eagerBeansExcludeFilter() {
+        return (beanName, beanDefinition, beanType) -> beanType != null
+                && (FlywayMigrationInitializer.class.isAssignableFrom(beanType) || hasScheduledMethods(beanType));
+    }
+
+    private static boolean hasScheduledMethods(Class<?> beanType) {
+        return !MethodIntrospector.selectMethods(beanType, (MethodIntrospector.MetadataLookup<Scheduled>) method ->
+                AnnotatedElementUtils.findMergedAnnotation(method, Scheduled.class)).isEmpty();
+    }
+
+    /**
+     * Пишет в лог одну строку с временем и памятью на момент готовности. Ее же разбирает бенчмарк старта
+     * (ru.auth.loadtest.StartupBenchmark), поэтому значения записаны парами ключ=значение.
+     * ready_ms - от запуска процесса до готовности, context_ms - из них на Spring, rss_kb - резидентная память
+     * процесса (только Linux, иначе -1), beans - сколько синглтонов создано к этому моменту из скольких объявленных,
+     * cds - запущен ли процесс с CDS архивом классов приложения.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void reportStartup(ApplicationReadyEvent event) {
+        long readyMs = ProcessHandle.current().info().startInstant()
+                .map(start -> Duration.between(start, Instant.now()).toMillis())
+                .orElseGet(() -> ManagementFactory.getRuntimeMXBean().getUptime());
+        long contextMs = event.getTimeTaken() != null ? event.getTimeTaken().toMillis() : -1;
+        ConfigurableListableBeanFactory beanFactory = event.getApplicationContext().getBeanFactory();
+        long heapKb = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() / 1024;
+        // Базовый CDS архив JDK используется всегда, здесь интересен архив классов самого приложения
+        boolean appCds = ManagementFactory.getRuntimeMXBean().getInputArguments().stream()
+                .anyMatch(arg -> arg.startsWith("-XX:SharedArchiveFile"));
+        log.info("Сервис готов: ready_ms={} context_ms={} rss_kb={} heap_kb={} classes={} beans={}/{} aot={} cds={} port={}",
+                readyMs, contextMs, residentSetKb(), heapKb,
+                ManagementFactory.getClassLoadingMXBean().getLoadedClassCount(),
+                beanFactory.getSingletonCount(), beanFactory.getBeanDefinitionCount(),
+                AotDetector.useGeneratedArtifacts(), appCds,
+                event.getApplicationContext().getEnvironment().getProperty("local.server.port", "-"));
+    }
+
+    private static long residentSetKb() {
+        if (!Files.isReadable(PROC_STATUS)) {
+            return -1;
+        }
+        try {
+            for (String line : Files.readAllLines(PROC_STATUS)) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.replaceAll("\\D", ""));
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            log.debug("Не удалось прочитать VmRSS", e);
+        }
+        return -1;
+    }
+}
@@ -1,14 +1,71 @@
 package ru.auth.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.web.bind.annotation.GetMapping;
-import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import ru.auth.model.Role;
+import ru.auth.model.User;
+import ru.auth.payload.PasswordResetRequest;
+import ru.auth.security.RequiresRole;
+import ru.auth.service.AuthService;
+import ru.auth.service.RoleHierarchyService;
+import ru.auth.service.UserImportService;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+@Slf4j
 @RestController
+@RequiresRole("ADMIN")
 @RequestMapping("/api/admin")
 public class AdminController {
 
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    private static final MediaType TEXT_PLAIN_UTF8 = new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8);
+
+    private final AuthService authService;
+    private final UserImportService userImportService;
+    private final RoleHierarchyService roleHierarchyService;
+    private final ObjectMapper objectMapper;
+    private final AsyncTaskExecutor taskExecutor;
+    private final long importTimeoutMs;
+
+    /**
+     * @param taskExecutor Пул асинхронных запросов MVC, в нем идет импорт.
+     * @param importTimeoutMs Сколько может длиться один импорт, 0 - без ограничения.
+     */
+    @Autowired
+    public AdminController(AuthService authService, UserImportService userImportService,
+                           RoleHierarchyService roleHierarchyService, ObjectMapper objectMapper,
+                           @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME) AsyncTaskExecutor taskExecutor,
+                           @Value("${auth.import.timeout-ms:3600000}") long importTimeoutMs) {
+        this.authService = authService;
+        this.userImportService = userImportService;
+        this.roleHierarchyService = roleHierarchyService;
+        this.objectMapper = objectMapper;
+        this.taskExecutor = taskExecutor;
+        this.importTimeoutMs = importTimeoutMs;
+    }
+
     @GetMapping("/greet")
     public ResponseEntity<String> greetAdmin() {
         return ResponseEntity.ok("Тестовый ответ приветствие ADMIN.");
@@ -18,4 +75,239 @@ public class AdminController {
     public ResponseEntity<String> listAllUsers() {
         return ResponseEntity.ok("Показ всех пользователей для админа.");
     }
+
+    /**
+     * Выдает пользователю роль.
+     * @param login Логин пользователя.
+     * @param role Имя роли.
+     * @return Пользователь с обновленным набором ролей или сообщение об ошибке.
+     */
+    @PostMapping("/users/{login}/roles/{role}")
+    public ResponseEntity<?> addRole(@PathVariable String login, @PathVariable String role) {
+        try {
+            return ResponseEntity.ok(toResponse(authService.addRole(login, role)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        }
+    }
+
+    /**
+     * Забирает у пользователя роль.
+     * @param login Логин пользователя.
+     * @param role Имя роли.
+     * @return Пользователь с обновленным набором ролей или сообщение об ошибке.
+     */
+    @DeleteMapping("/users/{login}/roles/{role}")
+    public ResponseEntity<?> removeRole(@PathVariable String login, @PathVariable String role) {
+        try {
+            return ResponseEntity.ok(toResponse(authService.removeRole(login, role)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        }
+    }
+
+    /**
+     * Сбрасывает пароль пользователя.
+     * @param login Логин пользователя.
+     * @param request Тело запроса с новым паролем.
+     * @return Ответ об успехе или ошибке.
+     */
+    @PostMapping("/users/{login}/password")
+    public ResponseEntity<?> resetPassword(@PathVariable String login, @RequestBody PasswordResetRequest request) {
+        if (request.getPassword() == null || request.getPassword().isEmpty()) {
+            return ResponseEntity.badRequest().body("Пароль не может быть пустым.");
+        }
+        try {
+            authService.resetPassword(login, request.getPassword());
+            return ResponseEntity.ok("Пароль успешно сброшен.");
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        }
+    }
+
+    /**
+     * Все роли: собственные родители и разрешения, а также итоговые права с учетом наследования.
+     * @return Список ролей.
+     */
+    @GetMapping("/roles")
+    public ResponseEntity<List<RoleHierarchyService.RoleInfo>> listRoles() {
+        return ResponseEntity.ok(roleHierarchyService.roles());
+    }
+
+    /**
+     * Создает роль.
+     * @param role Имя роли.
+     * @return Ответ об успехе или 409, если роль уже есть.
+     */
+    @PostMapping("/roles/{role}")
+    public ResponseEntity<?> createRole(@PathVariable String role) {
+        return changeRoles(() -> roleHierarchyService.createRole(role), HttpStatus.CREATED);
+    }
+
+    /**
+     * Добавляет роли родителя: роль получает все его права.
+     * @param role Имя роли.
+     * @param parent Имя родительской роли.
+     * @return Ответ об успехе, 404 если роли нет, 409 если связь образует цикл.
+     */
+    @PostMapping("/roles/{role}/parents/{parent}")
+    public ResponseEntity<?> addParent(@PathVariable String role, @PathVariable String parent) {
+        return changeRoles(() -> roleHierarchyService.addParent(role, parent), HttpStatus.OK);
+    }
+
+    @DeleteMapping("/roles/{role}/parents/{parent}")
+    public ResponseEntity<?> removeParent(@PathVariable String role, @PathVariable String parent) {
+        return changeRoles(() -> roleHierarchyService.removeParent(role, parent), HttpStatus.OK);
+    }
+
+    /**
+     * Выдает роли разрешение.
+     * @param role Имя роли.
+     * @param permission Имя разрешения, например users:import.
+     * @return Ответ об успехе или 404, если роли нет или имя разрешения недопустимо.
+     */
+    @PostMapping("/roles/{role}/permissions/{permission}")
+    public ResponseEntity<?> addPermission(@PathVariable String role, @PathVariable String permission) {
+        return changeRoles(() -> roleHierarchyService.addPermission(role, permission), HttpStatus.OK);
+    }
+
+    @DeleteMapping("/roles/{role}/permissions/{permission}")
+    public ResponseEntity<?> removePermission(@PathVariable String role, @PathVariable String permission) {
+        return changeRoles(() -> roleHierarchyService.removePermission(role, permission), HttpStatus.OK);
+    }
+
+    private ResponseEntity<?> changeRoles(Runnable change, HttpStatus status) {
+        try {
+            change.run();
+            return ResponseEntity.status(status).body(roleHierarchyService.roles());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        }
+    }
+
+    /**
+     * Массовый импорт пользователей из NDJSON (application/x-ndjson) или CSV (text/csv).
+     * Ответ - тоже NDJSON и отдается по мере импорта: ошибка по каждой отклоненной строке
+     * ({"line":..,"login":..,"error":..}), прогресс после каждой пачки ({"imported":..,"failed":..})
+     * и итог с "done":true.
+     * Импорт идет дольше стандартного тайм-аута асинхронного запроса (30 с у Tomcat), поэтому у ответа
+     * свой тайм-аут auth.import.timeout-ms.
+     * Слот импорта занимается до запуска задачи. Если задача так и не запустилась (пул отказал, запрос
+     * завершился по тайм-ауту или ошибке, пока она ждала в очереди), слот освобождают обратные вызовы ответа,
+     * иначе все следующие импорты получали бы 409.
+     * @param request Запрос, тело которого читается потоком.
+     * @return Поток результатов импорта, 409, если другой импорт еще идет, или 503, если пул отказал в запуске.
+     */
+    @PostMapping(value = "/users/import", consumes = {"application/x-ndjson", "text/csv"})
+    public ResponseEntity<ResponseBodyEmitter> importUsers(HttpServletRequest request) {
+        UserImportService.Format format = MediaType.parseMediaType(request.getContentType()).isCompatibleWith(NDJSON)
+                ? UserImportService.Format.NDJSON : UserImportService.Format.CSV;
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(importTimeoutMs);
+        if (!userImportService.tryAcquire()) {
+            send(emitter, "Импорт пользователей уже выполняется.".getBytes(StandardCharsets.UTF_8), TEXT_PLAIN_UTF8);
+            emitter.complete();
+            return ResponseEntity.status(HttpStatus.CONFLICT).contentType(TEXT_PLAIN_UTF8).body(emitter);
+        }
+        // Слот освобождает либо importUsers, либо обратный вызов - тот, кто первым займет started
+        AtomicBoolean started = new AtomicBoolean();
+        Runnable releaseIfNotStarted = () -> {
+            if (started.compareAndSet(false, true)) {
+                userImportService.release();
+            }
+        };
+        emitter.onTimeout(releaseIfNotStarted);
+        emitter.onError(e -> releaseIfNotStarted.run());
+        emitter.onCompletion(releaseIfNotStarted);
+        try {
+            taskExecutor.execute(() -> {
+                if (started.compareAndSet(false, true)) {
+                    importUsers(request, format, emitter);
+                }
+            });
+        } catch (TaskRejectedException e) {
+            log.error("Не удалось запустить импорт пользователей", e);
+            releaseIfNotStarted.run();
+            send(emitter, "Импорт пользователей не удалось запустить, повторите позже.".getBytes(StandardCharsets.UTF_8),
+                    TEXT_PLAIN_UTF8);
+            emitter.complete();
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).contentType(TEXT_PLAIN_UTF8).body(emitter);
+        }
+        return ResponseEntity.ok().contentType(NDJSON).body(emitter);
+    }
+
+    private void importUsers(HttpServletRequest request, UserImportService.Format format, ResponseBodyEmitter emitter) {
+        // Ошибки по строкам копятся до конца пачки и уходят клиенту одной отправкой вместе с прогрессом
+        ByteArrayOutputStream lines = new ByteArrayOutputStream();
+        try {
+            UserImportService.Summary result = userImportService.importUsers(request.getInputStream(), format,
+                    new UserImportService.Listener() {
+                        @Override
+                        public void lineFailed(long line, String login, String error) {
+                            Map<String, Object> failure = new LinkedHashMap<>();
+                            failure.put("line", line);
+                            failure.put("login", login);
+                            failure.put("error", error);
+                            writeLine(lines, failure);
+                        }
+
+                        @Override
+                        public void batchCompleted(UserImportService.Summary progress) {
+                            writeLine(lines, summary(progress, false));
+                            send(emitter, lines.toByteArray(), NDJSON);
+                            lines.reset();
+                        }
+                    });
+            writeLine(lines, summary(result, true));
+            send(emitter, lines.toByteArray(), NDJSON);
+        } catch (Exception e) {
+            // Статус 200 уже отправлен, ошибка уходит последней строкой ответа
+            log.error("Ошибка импорта пользователей", e);
+            try {
+                lines.reset();
+                writeLine(lines, Map.<String, Object>of("error", "Импорт прерван: " + e.getMessage(), "done", true));
+                send(emitter, lines.toByteArray(), NDJSON);
+            } catch (RuntimeException ignored) {
+                // Клиент отключился или ответ закрыт по тайм-ауту: сообщить об ошибке уже некому
+            }
+        } finally {
+            emitter.complete();
+        }
+    }
+
+    private static Map<String, Object> summary(UserImportService.Summary summary, boolean done) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("imported", summary.getImported());
+        result.put("failed", summary.getFailed());
+        if (done) {
+            result.put("done", true);
+        }
+        return result;
+    }
+
+    private void writeLine(ByteArrayOutputStream output, Map<String, Object> value) {
+        try {
+            output.write(objectMapper.writeValueAsBytes(value));
+            output.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void send(ResponseBodyEmitter emitter, byte[] data, MediaType mediaType) {
+        try {
+            emitter.send(data, mediaType);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Map<String, Object> toResponse(User user) {
+        Map<String, Object> responseBody = new HashMap<>();
+        responseBody.put("id", user.getId());
+        responseBody.put("login", user.getLogin());
+        responseBody.put("roles", user.getRoles().stream().map(Role::getName).collect(Collectors.toList()));
+        return responseBody;
+    }
 }
@@ -1,129 +1,274 @@
 package ru.auth.controller;
 
+import io.jsonwebtoken.JwtException;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.DisabledException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.web.bind.annotation.*;
-import ru.auth.config.CustomUserDetailsService;
-import ru.auth.model.User;
+import ru.auth.config.CachingUserDetailsService;
 import ru.auth.payload.LoginRequest;
 import ru.auth.payload.LoginResponse;
+import ru.auth.payload.RefreshRequest;
 import ru.auth.payload.RegistrationRequest;
+import ru.auth.security.AuthMetrics;
+import ru.auth.security.AuthMetrics.Endpoint;
+import ru.auth.security.AuthMetrics.Outcome;
+import ru.auth.security.JwtRequestFilter;
 import ru.auth.security.JwtUtil;
+import ru.auth.security.VerifiedToken;
 import ru.auth.service.AuthService;
+import ru.auth.service.LoginThrottleService;
+import ru.auth.service.PasswordHashingService;
+import ru.auth.service.PasswordUpgradeService;
+import ru.auth.service.RefreshTokenService;
 import ru.auth.service.RevokedTokenService;
+import ru.auth.service.UserAlreadyExistsException;
 
-import java.util.Date;
+import java.sql.SQLTransientConnectionException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
 
+@Slf4j
 @RestController
 @RequestMapping("/auth")
 public class AuthController {
 
     private final AuthService authService;
     private final AuthenticationManager authenticationManager;
-    private final CustomUserDetailsService userDetailsService;
     private final JwtUtil jwtUtil;
     private final RevokedTokenService revokedTokenService;
+    private final PasswordHashingService passwordHashingService;
+    private final PasswordUpgradeService passwordUpgradeService;
+    private final RefreshTokenService refreshTokenService;
+    private final CachingUserDetailsService userDetailsService;
+    private final LoginThrottleService loginThrottleService;
+    private final AuthMetrics metrics;
 
     @Autowired
     public AuthController(AuthService authService,
                           AuthenticationManager authenticationManager,
-                          CustomUserDetailsService userDetailsService,
                           JwtUtil jwtUtil,
-                          RevokedTokenService revokedTokenService) {
+                          RevokedTokenService revokedTokenService,
+                          PasswordHashingService passwordHashingService,
+                          PasswordUpgradeService passwordUpgradeService,
+                          RefreshTokenService refreshTokenService,
+                          CachingUserDetailsService userDetailsService,
+                          LoginThrottleService loginThrottleService,
+                          AuthMetrics metrics) {
         this.authService = authService;
         this.authenticationManager = authenticationManager;
-        this.userDetailsService = userDetailsService;
         this.jwtUtil = jwtUtil;
         this.revokedTokenService = revokedTokenService;
+        this.passwordHashingService = passwordHashingService;
+        this.passwordUpgradeService = passwordUpgradeService;
+        this.refreshTokenService = refreshTokenService;
+        this.userDetailsService = userDetailsService;
+        this.loginThrottleService = loginThrottleService;
+        this.metrics = metrics;
     }
 
     /**
      * Эндпоинт для регистрации новых пользователей.
+     * Хэширование пароля выполняется в отдельном пуле, поток запроса освобождается сразу.
      * @param request Тело запроса с данными для регистрации (login, password, email).
      * @return Ответ с информацией о созданном пользователе или сообщение об ошибке.
      */
     @PostMapping("/register")
-    public ResponseEntity<?> registerUser(@RequestBody RegistrationRequest request) {
-        try {
-            User newUser = authService.registerUser(request.getLogin(), request.getPassword(), request.getEmail());
-            // Можно вернуть только часть информации о пользователе, без пароля
-            Map<String, Object> responseBody = new HashMap<>();
-            responseBody.put("id", newUser.getId());
-            responseBody.put("login", newUser.getLogin());
-            responseBody.put("email", newUser.getEmail());
-            responseBody.put("roles", newUser.getRoles().stream().map(role -> role.getName()).collect(java.util.stream.Collectors.toList()));
-            return ResponseEntity.status(HttpStatus.CREATED).body(responseBody);
-        } catch (IllegalArgumentException e) {
-            // Если логин или email заняты
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
-        } catch (Exception e) {
-            // Обработка других возможных ошибок
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("An error occurred during registration.");
-        }
+    public CompletableFuture<ResponseEntity<?>> registerUser(@RequestBody RegistrationRequest request) {
+        return authService.registerUser(request.getLogin(), request.getPassword(), request.getEmail())
+                .<ResponseEntity<?>>thenApply(newUser -> {
+                    // Можно вернуть только часть информации о пользователе, без пароля
+                    Map<String, Object> responseBody = new HashMap<>();
+                    responseBody.put("id", newUser.getId());
+                    responseBody.put("login", newUser.getLogin());
+                    responseBody.put("email", newUser.getEmail());
+                    responseBody.put("roles", newUser.getRoles().stream().map(role -> role.getName()).collect(java.util.stream.Collectors.toList()));
+                    metrics.endpointOutcome(Endpoint.REGISTER, Outcome.SUCCESS);
+                    return ResponseEntity.status(HttpStatus.CREATED).body(responseBody);
+                })
+                .exceptionally(error -> {
+                    Throwable e = unwrap(error);
+                    if (e instanceof UserAlreadyExistsException) {
+                        // Если логин или email заняты
+                        metrics.endpointOutcome(Endpoint.REGISTER, Outcome.REJECTED);
+                        return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+                    }
+                    if (e instanceof IllegalArgumentException) {
+                        metrics.endpointOutcome(Endpoint.REGISTER, Outcome.REJECTED);
+                        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+                    }
+                    if (e instanceof RejectedExecutionException || connectionUnavailable(e)) {
+                        return serviceBusy(Endpoint.REGISTER);
+                    }
+                    // Обработка других возможных ошибок
+                    log.error("Ошибка при регистрации пользователя {}", request.getLogin(), e);
+                    metrics.endpointOutcome(Endpoint.REGISTER, Outcome.ERROR);
+                    return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("An error occurred during registration.");
+                });
     }
 
     /**
      * Эндпоинт для авторизации существующих пользователей.
+     * Проверка пароля выполняется в отдельном пуле, поток запроса освобождается сразу.
+     * Попытки сверх лимита по логину или IP отклоняются с 429 до обращения к базе и хэширования.
      * @param request Тело запроса с данными для логина (login, password).
+     * @param httpRequest HTTP запрос, из него берется адрес клиента.
      * @return Ответ с JWT токеном или сообщение об ошибке.
      */
     @PostMapping("/login")
-    public ResponseEntity<?> loginUser(@RequestBody LoginRequest request) {
-        try {
-            authenticationManager.authenticate(
+    public CompletableFuture<ResponseEntity<?>> loginUser(@RequestBody LoginRequest request, HttpServletRequest httpRequest) {
+        LoginThrottleService.Decision decision = loginThrottleService.tryAcquire(request.getLogin(), httpRequest.getRemoteAddr());
+        if (!decision.isAllowed()) {
+            metrics.endpointOutcome(Endpoint.LOGIN, Outcome.THROTTLED);
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(decision.getRetryAfterSeconds()))
+                    .body("Too many login attempts, try again later."));
+        }
+        return passwordHashingService.<ResponseEntity<?>>submit(() -> {
+            Authentication authentication = authenticationManager.authenticate(
                     new UsernamePasswordAuthenticationToken(request.getLogin(), request.getPassword())
             );
-
-            final UserDetails userDetails = userDetailsService.loadUserByUsername(request.getLogin());
+            // Пользователь уже загружен AuthenticationManager, повторно в базу не ходим
+            final UserDetails userDetails = (UserDetails) authentication.getPrincipal();
+            passwordUpgradeService.upgradeIfNeeded(userDetails, request.getPassword());
 
             final String jwt = jwtUtil.generateToken(userDetails);
+            final String refreshToken = refreshTokenService.issue(userDetails.getUsername());
 
-            return ResponseEntity.ok(new LoginResponse(jwt));
+            metrics.endpointOutcome(Endpoint.LOGIN, Outcome.SUCCESS);
+            return ResponseEntity.ok(new LoginResponse(jwt, refreshToken));
+        }).exceptionally(error -> {
+            Throwable e = unwrap(error);
+            if (e instanceof BadCredentialsException || e instanceof DisabledException) {
+                metrics.endpointOutcome(Endpoint.LOGIN, Outcome.REJECTED);
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Invalid login or password.");
+            }
+            if (e instanceof RejectedExecutionException || connectionUnavailable(e)) {
+                return serviceBusy(Endpoint.LOGIN);
+            }
+            log.error("Ошибка при входе пользователя {}", request.getLogin(), e);
+            metrics.endpointOutcome(Endpoint.LOGIN, Outcome.ERROR);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("An error occurred during login.");
+        });
+    }
 
-        } catch (BadCredentialsException e) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Invalid login or password.");
+    /**
+     * Эндпоинт для обмена refresh токена на новую пару токенов без ввода логина и пароля.
+     * Старый refresh токен после обмена недействителен, повторное его использование отзывает всю цепочку.
+     * @param request Тело запроса с refresh токеном.
+     * @return Ответ с новыми access и refresh токенами или сообщение об ошибке.
+     */
+    @PostMapping("/refresh")
+    public ResponseEntity<?> refreshToken(@RequestBody RefreshRequest request) {
+        try {
+            RefreshTokenService.Rotation rotation = refreshTokenService.rotate(request.getRefreshToken());
+            UserDetails userDetails = userDetailsService.loadUserByUsername(rotation.getLogin());
+            if (!userDetails.isEnabled()) {
+                throw new DisabledException("Пользователь отключен: " + rotation.getLogin());
+            }
+            metrics.endpointOutcome(Endpoint.REFRESH, Outcome.SUCCESS);
+            return ResponseEntity.ok(new LoginResponse(jwtUtil.generateToken(userDetails), rotation.getRefreshToken()));
+        } catch (BadCredentialsException | DisabledException | UsernameNotFoundException e) {
+            metrics.endpointOutcome(Endpoint.REFRESH, Outcome.REJECTED);
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Invalid refresh token.");
         } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("An error occurred during login.");
+            if (connectionUnavailable(e)) {
+                return serviceBusy(Endpoint.REFRESH);
+            }
+            log.error("Ошибка при обновлении токена", e);
+            metrics.endpointOutcome(Endpoint.REFRESH, Outcome.ERROR);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("An error occurred during token refresh.");
         }
     }
 
+    /**
+     * Ответ при переполненном пуле хэширования или пуле соединений: клиенту стоит повторить запрос чуть позже.
+     */
+    private ResponseEntity<?> serviceBusy(Endpoint endpoint) {
+        metrics.endpointOutcome(endpoint, Outcome.BUSY);
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body("Service is busy, try again later.");
+    }
+
+    /**
+     * Пул соединений с базой исчерпан: Hikari не выдал соединение за connection-timeout.
+     * Исключение приходит завернутым в исключения Spring и Hibernate, поэтому проверяется вся цепочка причин.
+     */
+    private static boolean connectionUnavailable(Throwable error) {
+        for (Throwable e = error; e != null; e = e.getCause()) {
+            if (e instanceof SQLTransientConnectionException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
     /**
      * Эндпоинт для отзыва текущего авторизованного токена.
-     * Токен должен быть передан в заголовке Authorization.
+     * Токен должен быть передан в заголовке Authorization. Токен и пользователя уже проверил и загрузил
+     * {@link JwtRequestFilter}, здесь они берутся из запроса без повторного разбора и обращения к базе.
+     * @param authorizationHeader Заголовок Authorization.
+     * @param verifiedToken Токен, проверенный фильтром.
+     * @param principal Аутентифицированный пользователь.
      * @return Ответ об успехе или ошибке.
      */
     @PostMapping("/revoke")
-    public ResponseEntity<?> revokeToken(@RequestHeader("Authorization") String authorizationHeader) {
+    public ResponseEntity<?> revokeToken(@RequestHeader("Authorization") String authorizationHeader,
+                                         @RequestAttribute(name = JwtRequestFilter.VERIFIED_TOKEN_ATTRIBUTE, required = false)
+                                         VerifiedToken verifiedToken,
+                                         @AuthenticationPrincipal UserDetails principal) {
         if (authorizationHeader == null || !authorizationHeader.startsWith("Bearer ")) {
+            metrics.endpointOutcome(Endpoint.REVOKE, Outcome.REJECTED);
             return ResponseEntity.badRequest().body("Authorization header missing or in wrong format.");
         }
 
-        String jwt = authorizationHeader.substring(7);
+        VerifiedToken token = verifiedToken;
+        if (token == null) {
+            try {
+                token = jwtUtil.verify(authorizationHeader.substring(7));
+            } catch (JwtException | IllegalArgumentException e) {
+                metrics.endpointOutcome(Endpoint.REVOKE, Outcome.REJECTED);
+                return ResponseEntity.badRequest().body("Токе не валидный или истек.");
+            }
+        }
 
         try {
-            String username = jwtUtil.extractUsername(jwt);
-            UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-            Date expirationDate = jwtUtil.extractExpiration(jwt);
-
-            if (!jwtUtil.validateToken(jwt, userDetails)) {
+            if (principal == null || !jwtUtil.validateToken(token, principal)) {
+                metrics.endpointOutcome(Endpoint.REVOKE, Outcome.REJECTED);
                 return ResponseEntity.badRequest().body("Токе не валидный или истек.");
             }
-            if (revokedTokenService.isTokenRevoked(jwt)) {
+            if (revokedTokenService.isTokenRevoked(token)) {
+                metrics.endpointOutcome(Endpoint.REVOKE, Outcome.REJECTED);
                 return ResponseEntity.badRequest().body("Токен уже отозван.");
             }
 
-            revokedTokenService.revokeToken(jwt, expirationDate);
+            revokedTokenService.revokeToken(token);
+            metrics.endpointOutcome(Endpoint.REVOKE, Outcome.SUCCESS);
 
             return ResponseEntity.ok("Токер успешно отозван.");
 
         } catch (Exception e) {
+            log.error("Ошибка при отзыве токена", e);
+            metrics.endpointOutcome(Endpoint.REVOKE, Outcome.ERROR);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Ошибка при отзывании токена.");
         }
     }
@@ -0,0 +1,238 @@
+package ru.auth.controller;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.web.bind.annotation.*;
+import ru.auth.payload.IntrospectionBatchRequest;
+import ru.auth.payload.IntrospectionRequest;
+import ru.auth.security.AuthMetrics;
+import ru.auth.security.AuthMetrics.Endpoint;
+import ru.auth.security.AuthMetrics.Outcome;
+import ru.auth.security.JwtUtil;
+import ru.auth.security.RoleRegistry;
+import ru.auth.security.TokenAuthenticator;
+import ru.auth.security.VerifiedToken;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Интроспекция access токенов в духе RFC 7662 для сервисов, которые не проверяют JWT сами.
+ * Токен проходит ту же проверку, что и в {@link ru.auth.security.JwtRequestFilter}: кэш проверенных токенов,
+ * отзыв и кэш пользователей, поэтому частые запросы по одним и тем же токенам не ходят в базу.
+ * Ответ с активным токеном можно кэшировать до момента незадолго до его истечения (Cache-Control: max-age).
+ * Клиент предъявляет ключ (RFC 7662, раздел 2.1): без настроенных ключей интроспекция закрыта,
+ * пока открытый доступ не включен явно через auth.introspect.allow-anonymous.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/auth/introspect")
+public class IntrospectionController {
+
+    /** Заголовок с ключом клиента интроспекции. */
+    public static final String API_KEY_HEADER = "X-Introspection-Key";
+
+    private final TokenAuthenticator tokenAuthenticator;
+    private final AuthMetrics metrics;
+    private final List<byte[]> apiKeys = new ArrayList<>();
+    private final boolean allowAnonymous;
+    private final int maxBatch;
+    private final long cacheMarginSeconds;
+    private final long maxCacheSeconds;
+
+    /**
+     * @param apiKeys Ключи клиентов через запятую. Пустое значение - интроспекция закрыта, если не включен allowAnonymous.
+     * @param allowAnonymous Открыть интроспекцию без ключа. Учитывается, только когда ключи не заданы.
+     * @param maxBatch Максимальное число токенов в пакетном запросе.
+     * @param cacheMarginSeconds За сколько секунд до истечения токена ответ перестает быть кэшируемым.
+     * @param maxCacheSeconds Верхняя граница max-age: дольше этого клиент не увидит отзыв токена.
+     */
+    @Autowired
+    public IntrospectionController(TokenAuthenticator tokenAuthenticator, AuthMetrics metrics,
+                                   @Value("${auth.introspect.api-keys:}") List<String> apiKeys,
+                                   @Value("${auth.introspect.allow-anonymous:false}") boolean allowAnonymous,
+                                   @Value("${auth.introspect.max-batch:100}") int maxBatch,
+                                   @Value("${auth.introspect.cache-margin-seconds:5}") long cacheMarginSeconds,
+                                   @Value("${auth.introspect.max-cache-seconds:60}") long maxCacheSeconds) {
+        this.tokenAuthenticator = tokenAuthenticator;
+        this.metrics = metrics;
+        for (String key : apiKeys) {
+            if (!key.isBlank()) {
+                this.apiKeys.add(key.trim().getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        this.allowAnonymous = allowAnonymous;
+        if (this.apiKeys.isEmpty() && !allowAnonymous) {
+            log.warn("auth.introspect.api-keys не задан: интроспекция отвечает 401 на все запросы");
+        }
+        this.maxBatch = maxBatch;
+        this.cacheMarginSeconds = cacheMarginSeconds;
+        this.maxCacheSeconds = maxCacheSeconds;
+    }
+
+    /**
+     * Интроспекция одного токена, тело запроса по RFC 7662: application/x-www-form-urlencoded с параметром token.
+     * @param apiKey Ключ клиента интроспекции.
+     * @param token Проверяемый токен.
+     * @return {"active":true, "sub":.., "exp":.., "roles":[..], ...} или {"active":false}.
+     */
+    @PostMapping(consumes = MediaType.APPLICATION_FORM_URLENCODED_VALUE)
+    public ResponseEntity<?> introspectForm(@RequestHeader(name = API_KEY_HEADER, required = false) String apiKey,
+                                            @RequestParam(name = "token", required = false) String token) {
+        return introspectSingle(apiKey, token);
+    }
+
+    /**
+     * То же, что {@link #introspectForm}, но токен передается в JSON: {"token":"..."}.
+     */
+    @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> introspectJson(@RequestHeader(name = API_KEY_HEADER, required = false) String apiKey,
+                                            @RequestBody IntrospectionRequest request) {
+        return introspectSingle(apiKey, request.getToken());
+    }
+
+    /**
+     * Пакетная интроспекция: {"tokens":["...", ...]}. Результаты возвращаются в том же порядке, что и токены.
+     * Ответ кэшируется не дольше, чем самый короткий из активных токенов.
+     * @param apiKey Ключ клиента интроспекции.
+     * @param request Список токенов, не больше auth.introspect.max-batch.
+     * @return {"results":[...]} или сообщение об ошибке.
+     */
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> introspectBatch(@RequestHeader(name = API_KEY_HEADER, required = false) String apiKey,
+                                             @RequestBody IntrospectionBatchRequest request) {
+        if (!authorized(apiKey)) {
+            return unauthorized();
+        }
+        List<String> tokens = request.getTokens();
+        if (tokens == null || tokens.isEmpty() || tokens.size() > maxBatch) {
+            metrics.endpointOutcome(Endpoint.INTROSPECT, Outcome.REJECTED);
+            return ResponseEntity.badRequest().body("Нужно передать от 1 до " + maxBatch + " токенов.");
+        }
+        try {
+            List<Map<String, Object>> results = new ArrayList<>(tokens.size());
+            long maxAge = Long.MAX_VALUE;
+            for (String token : tokens) {
+                TokenAuthenticator.Result result = token == null || token.isEmpty() ? null : tokenAuthenticator.authenticate(token);
+                results.add(toResponse(result));
+                if (result != null && result.isAuthenticated()) {
+                    maxAge = Math.min(maxAge, maxAgeSeconds(result.getToken()));
+                }
+            }
+            metrics.endpointOutcome(Endpoint.INTROSPECT, Outcome.SUCCESS);
+            // Неактивные токены активными уже не станут, поэтому срок кэширования задают только активные
+            Map<String, Object> body = new LinkedHashMap<>();
+            body.put("results", results);
+            return ResponseEntity.ok().cacheControl(cacheControl(maxAge == Long.MAX_VALUE ? 0 : maxAge)).body(body);
+        } catch (Exception e) {
+            log.error("Ошибка пакетной интроспекции токенов", e);
+            metrics.endpointOutcome(Endpoint.INTROSPECT, Outcome.ERROR);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Ошибка интроспекции токенов.");
+        }
+    }
+
+    private ResponseEntity<?> introspectSingle(String apiKey, String token) {
+        if (!authorized(apiKey)) {
+            return unauthorized();
+        }
+        if (token == null || token.isEmpty()) {
+            metrics.endpointOutcome(Endpoint.INTROSPECT, Outcome.REJECTED);
+            return ResponseEntity.badRequest().body("Параметр token обязателен.");
+        }
+        try {
+            TokenAuthenticator.Result result = tokenAuthenticator.authenticate(token);
+            metrics.endpointOutcome(Endpoint.INTROSPECT, Outcome.SUCCESS);
+            long maxAge = result.isAuthenticated() ? maxAgeSeconds(result.getToken()) : 0;
+            return ResponseEntity.ok().cacheControl(cacheControl(maxAge)).body(toResponse(result));
+        } catch (Exception e) {
+            log.error("Ошибка интроспекции токена", e);
+            metrics.endpointOutcome(Endpoint.INTROSPECT, Outcome.ERROR);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Ошибка интроспекции токена.");
+        }
+    }
+
+    /**
+     * Ответ по RFC 7662: у неактивного токена наружу не отдается ничего, кроме признака отзыва.
+     */
+    private static Map<String, Object> toResponse(TokenAuthenticator.Result result) {
+        Map<String, Object> response = new LinkedHashMap<>();
+        if (result == null || !result.isAuthenticated()) {
+            response.put("active", false);
+            if (result != null && result.getOutcome() == AuthMetrics.TokenOutcome.REVOKED) {
+                response.put("revoked", true);
+            }
+            return response;
+        }
+        VerifiedToken token = result.getToken();
+        response.put("active", true);
+        response.put("token_type", "Bearer");
+        response.put("sub", token.getSubject());
+        response.put("username", token.getSubject());
+        // Роли и разрешения берутся из проверенного пользователя: текущие, с учетом иерархии ролей
+        response.put("roles", JwtUtil.roleNames(result.getUserDetails()));
+        response.put("permissions", permissions(result.getUserDetails()));
+        response.put("iat", TimeUnit.MILLISECONDS.toSeconds(token.getIssuedAt().getTime()));
+        response.put("exp", TimeUnit.MILLISECONDS.toSeconds(token.getExpiration().getTime()));
+        if (token.getId() != null) {
+            response.put("jti", token.getId());
+        }
+        response.put("revoked", false);
+        return response;
+    }
+
+    private static List<String> permissions(UserDetails userDetails) {
+        List<String> permissions = new ArrayList<>();
+        for (GrantedAuthority authority : userDetails.getAuthorities()) {
+            if (!authority.getAuthority().startsWith(RoleRegistry.ROLE_PREFIX)) {
+                permissions.add(authority.getAuthority());
+            }
+        }
+        return permissions;
+    }
+
+    private long maxAgeSeconds(VerifiedToken token) {
+        long secondsLeft = TimeUnit.MILLISECONDS.toSeconds(token.getExpiration().getTime() - System.currentTimeMillis());
+        return Math.max(0, Math.min(secondsLeft - cacheMarginSeconds, maxCacheSeconds));
+    }
+
+    private static CacheControl cacheControl(long maxAgeSeconds) {
+        return maxAgeSeconds > 0
+                ? CacheControl.maxAge(maxAgeSeconds, TimeUnit.SECONDS).cachePrivate()
+                : CacheControl.noStore();
+    }
+
+    /**
+     * Ключ сравнивается за постоянное время, чтобы по времени ответа нельзя было подобрать его по символу.
+     */
+    private boolean authorized(String apiKey) {
+        if (apiKeys.isEmpty()) {
+            return allowAnonymous;
+        }
+        if (apiKey == null) {
+            return false;
+        }
+        byte[] presented = apiKey.getBytes(StandardCharsets.UTF_8);
+        boolean matched = false;
+        for (byte[] key : apiKeys) {
+            matched |= MessageDigest.isEqual(key, presented);
+        }
+        return matched;
+    }
+
+    private ResponseEntity<?> unauthorized() {
+        metrics.endpointOutcome(Endpoint.INTROSPECT, Outcome.REJECTED);
+        return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Неверный ключ интроспекции.");
+    }
+}
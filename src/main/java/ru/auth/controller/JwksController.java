@@ -0,0 +1,36 @@
+package ru.auth.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import ru.auth.security.JwtKeyRing;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Публикует открытые ключи подписи, чтобы другие сервисы проверяли токены без обращения к этому.
+ * Ответ кэшируется клиентами на jwt.keys.jwks-max-age-seconds; токен с незнакомым kid -
+ * повод для клиента перечитать набор раньше.
+ */
+@RestController
+public class JwksController {
+
+    private final JwtKeyRing keyRing;
+    private final CacheControl cacheControl;
+
+    @Autowired
+    public JwksController(JwtKeyRing keyRing,
+                          @Value("${jwt.keys.jwks-max-age-seconds:300}") long maxAgeSeconds) {
+        this.keyRing = keyRing;
+        this.cacheControl = CacheControl.maxAge(maxAgeSeconds, TimeUnit.SECONDS).cachePublic();
+    }
+
+    @GetMapping("/.well-known/jwks.json")
+    public ResponseEntity<Map<String, Object>> jwks() {
+        return ResponseEntity.ok().cacheControl(cacheControl).body(keyRing.getJwks());
+    }
+}
@@ -4,8 +4,10 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import ru.auth.security.RequiresRole;
 
 @RestController
+@RequiresRole("PREMIUM_USER")
 @RequestMapping("/api/premium")
 public class PremiumController {
 
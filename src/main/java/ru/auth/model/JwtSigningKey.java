@@ -0,0 +1,41 @@
+package ru.auth.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+@Entity
+@Table(name = "jwt_signing_keys")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class JwtSigningKey {
+
+    @Id
+    @Column(length = 36)
+    private String kid;
+
+    // RS256 или ES256
+    @Column(nullable = false, length = 10)
+    private String algorithm;
+
+    // Открытый ключ X.509 в Base64
+    @Column(name = "public_key", nullable = false, length = 4096)
+    private String publicKey;
+
+    // Закрытый ключ PKCS#8, зашифрованный AES-GCM ключом из jwt.secret, в Base64
+    @Column(name = "private_key", nullable = false, length = 4096)
+    private String privateKey;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    // Время вывода из оборота: ключ больше не подписывает, но проверяет выпущенные им токены
+    @Column(name = "retired_at")
+    private Instant retiredAt;
+}
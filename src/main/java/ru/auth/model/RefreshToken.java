@@ -0,0 +1,51 @@
+package ru.auth.model;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+@Entity
+@Table(name = "refresh_tokens", indexes = {
+        @Index(name = "idx_refresh_tokens_token_hash", columnList = "token_hash", unique = true),
+        @Index(name = "idx_refresh_tokens_family_id", columnList = "family_id"),
+        @Index(name = "idx_refresh_tokens_login", columnList = "login"),
+        @Index(name = "idx_refresh_tokens_expires_at", columnList = "expires_at")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+public class RefreshToken {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "refresh_tokens_seq")
+    @SequenceGenerator(name = "refresh_tokens_seq", sequenceName = "refresh_tokens_seq", allocationSize = User.ID_ALLOCATION_SIZE)
+    private Long id;
+
+    // SHA-256 от самого токена: в базе токен в открытом виде не хранится
+    @Column(name = "token_hash", nullable = false, length = 64)
+    private String tokenHash;
+
+    @Column(nullable = false)
+    private String login;
+
+    // Цепочка ротаций от одного входа; при повторном использовании токена отзывается целиком
+    @Column(name = "family_id", nullable = false, length = 36)
+    private String familyId;
+
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+
+    // Время, когда токен был обменян на новый; повторный обмен - признак кражи
+    @Column(name = "used_at")
+    private Instant usedAt;
+
+    public RefreshToken(String tokenHash, String login, String familyId, Instant expiresAt) {
+        this.tokenHash = tokenHash;
+        this.login = login;
+        this.familyId = familyId;
+        this.expiresAt = expiresAt;
+    }
+}
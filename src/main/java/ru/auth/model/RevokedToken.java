@@ -0,0 +1,32 @@
+package ru.auth.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+@Entity
+@Table(name = "revoked_tokens", indexes = {
+        @Index(name = "idx_revoked_tokens_expires_at", columnList = "expires_at"),
+        @Index(name = "idx_revoked_tokens_revoked_at", columnList = "revoked_at")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class RevokedToken {
+
+    // Идентификатор токена (TokenId) в виде 32 hex символов
+    @Id
+    @Column(length = 32)
+    private String id;
+
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+
+    @Column(name = "revoked_at", nullable = false)
+    private Instant revokedAt;
+}
@@ -4,7 +4,7 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
-import javax.persistence.*;
+import jakarta.persistence.*;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -16,7 +16,8 @@ import java.util.Set;
 public class Role {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "roles_seq")
+    @SequenceGenerator(name = "roles_seq", sequenceName = "roles_seq", allocationSize = User.ID_ALLOCATION_SIZE)
     private Long id;
 
     @Column(unique = true, nullable = false)
@@ -25,6 +26,19 @@ public class Role {
     @ManyToMany(mappedBy = "roles", fetch = FetchType.LAZY)
     private Set<User> users = new HashSet<>();
 
+    /** Роли, права которых эта роль наследует: ADMIN с родителем PREMIUM_USER получает и его права. */
+    @ManyToMany(fetch = FetchType.LAZY)
+    @JoinTable(name = "role_parents",
+            joinColumns = @JoinColumn(name = "role_id"),
+            inverseJoinColumns = @JoinColumn(name = "parent_id"))
+    private Set<Role> parents = new HashSet<>();
+
+    /** Собственные разрешения роли, без унаследованных. */
+    @ElementCollection(fetch = FetchType.LAZY)
+    @CollectionTable(name = "role_permissions", joinColumns = @JoinColumn(name = "role_id"))
+    @Column(name = "permission", nullable = false)
+    private Set<String> permissions = new HashSet<>();
+
     public Role(String name) {
         this.name = name;
     }
@@ -5,31 +5,57 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
-import javax.persistence.*;
+import jakarta.persistence.*;
 import java.util.HashSet;
+import java.util.Locale;
 import java.util.Set;
 
 @Entity
-@Table(name = "users")
+@Table(name = "users", uniqueConstraints = {
+        @UniqueConstraint(name = User.LOGIN_CONSTRAINT, columnNames = "login"),
+        @UniqueConstraint(name = User.EMAIL_CONSTRAINT, columnNames = "email")
+})
 @Getter
 @Setter
 @NoArgsConstructor
 @AllArgsConstructor
 public class User {
 
+    // Имена ограничений уникальности; индексы по lower() в базе (миграция V3) называются так же с суффиксом _lower
+    public static final String LOGIN_CONSTRAINT = "uk_users_login";
+    public static final String EMAIL_CONSTRAINT = "uk_users_email";
+
+    /**
+     * Id выдаются из последовательностей блоками (оптимизатор pooled-lo): одно обращение к последовательности
+     * на ID_ALLOCATION_SIZE вставок, и Hibernate может собирать вставки в JDBC-пакеты.
+     * Значение nextval - начало блока, блок занимает [nextval, nextval + ID_ALLOCATION_SIZE).
+     */
+    public static final String ID_SEQUENCE = "users_seq";
+    public static final int ID_ALLOCATION_SIZE = 50;
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = ID_SEQUENCE)
+    @SequenceGenerator(name = ID_SEQUENCE, sequenceName = ID_SEQUENCE, allocationSize = ID_ALLOCATION_SIZE)
     private Long id;
 
-    @Column(unique = true, nullable = false)
+    // Логин и email хранятся нормализованными (см. normalize), поэтому уникальность не зависит от регистра
+    @Column(nullable = false)
     private String login;
 
     @Column(nullable = false)
     private String password;
 
-    @Column(unique = true, nullable = false)
+    @Column(nullable = false)
     private String email;
 
+    // Отключенный пользователь не может войти, его токены перестают приниматься
+    @Column(nullable = false, columnDefinition = "boolean default true")
+    private boolean enabled = true;
+
+    // Версия токенов: увеличивается при смене ролей или пароля, старые токены перестают приниматься
+    @Column(name = "token_version", nullable = false, columnDefinition = "bigint default 0")
+    private long tokenVersion;
+
     @ManyToMany(cascade = CascadeType.MERGE, fetch = FetchType.EAGER)
     @JoinTable(
             name = "user_roles", // Промежуточная таблица для связи user <-> role
@@ -48,6 +74,20 @@ public class User {
         role.getUsers().remove(this);
     }
 
+    public long incrementTokenVersion() {
+        return ++this.tokenVersion;
+    }
+
+    /**
+     * Приводит логин или email к виду, в котором они хранятся: без пробелов по краям и в нижнем регистре.
+     * Для уже нормализованной строки возвращает ее же без выделения памяти.
+     * @param value Логин или email.
+     * @return Нормализованное значение или null.
+     */
+    public static String normalize(String value) {
+        return value == null ? null : value.trim().toLowerCase(Locale.ROOT);
+    }
+
     public User(String login, String password, String email) {
         this.login = login;
         this.password = password;
@@ -0,0 +1,10 @@
+package ru.auth.payload;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class IntrospectionBatchRequest {
+    private List<String> tokens;
+}
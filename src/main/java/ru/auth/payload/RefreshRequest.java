@@ -0,0 +1,8 @@
+package ru.auth.payload;
+
+import lombok.Data;
+
+@Data
+public class RefreshRequest {
+    private String refreshToken;
+}
@@ -0,0 +1,18 @@
+package ru.auth.payload;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Строка массового импорта пользователей. Задается либо password (будет захэширован),
+ * либо passwordHash - готовый хэш bcrypt или argon2. Без ролей пользователь получает GUEST.
+ */
+@Data
+public class UserImportRecord {
+    private String login;
+    private String email;
+    private String password;
+    private String passwordHash;
+    private List<String> roles;
+}
@@ -0,0 +1,32 @@
+package ru.auth.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import ru.auth.model.JwtSigningKey;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface JwtSigningKeyRepository extends JpaRepository<JwtSigningKey, String> {
+
+    List<JwtSigningKey> findByAlgorithm(String algorithm);
+
+    /**
+     * Условное обновление: из нескольких узлов, одновременно решивших сменить ключ, его выводит только один.
+     */
+    @Modifying
+    @Query("update JwtSigningKey k set k.retiredAt = :now where k.kid = :kid and k.retiredAt is null")
+    int retire(@Param("kid") String kid, @Param("now") Instant now);
+
+    @Modifying
+    @Query("update JwtSigningKey k set k.retiredAt = :now where k.kid <> :kid and k.retiredAt is null")
+    int retireAllExcept(@Param("kid") String kid, @Param("now") Instant now);
+
+    @Modifying
+    @Query("delete from JwtSigningKey k where k.retiredAt <= :before")
+    int deleteRetiredBefore(@Param("before") Instant before);
+}
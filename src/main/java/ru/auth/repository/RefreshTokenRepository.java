@@ -0,0 +1,33 @@
+package ru.auth.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import ru.auth.model.RefreshToken;
+
+import java.time.Instant;
+import java.util.Optional;
+
+@Repository
+public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Long> {
+
+    Optional<RefreshToken> findByTokenHash(String tokenHash);
+
+    @Modifying
+    @Query("update RefreshToken t set t.usedAt = :now where t.id = :id and t.usedAt is null")
+    int markUsed(@Param("id") Long id, @Param("now") Instant now);
+
+    @Modifying
+    @Query("delete from RefreshToken t where t.familyId = :familyId")
+    int deleteFamily(@Param("familyId") String familyId);
+
+    @Modifying
+    @Query("delete from RefreshToken t where t.login = :login")
+    int deleteByLogin(@Param("login") String login);
+
+    @Modifying
+    @Query("delete from RefreshToken t where t.expiresAt <= :now")
+    int deleteExpired(@Param("now") Instant now);
+}
@@ -0,0 +1,24 @@
+package ru.auth.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import ru.auth.model.RevokedToken;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface RevokedTokenRepository extends JpaRepository<RevokedToken, String> {
+
+    boolean existsByIdAndExpiresAtAfter(String id, Instant now);
+
+    @Query("select t.id from RevokedToken t where t.revokedAt >= :since and t.expiresAt > :now")
+    List<String> findIdsRevokedSince(@Param("since") Instant since, @Param("now") Instant now);
+
+    @Modifying
+    @Query("delete from RevokedToken t where t.expiresAt <= :now")
+    int deleteExpired(@Param("now") Instant now);
+}
@@ -0,0 +1,15 @@
+package ru.auth.repository;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Строка проекции иерархии ролей: роль и ее родительская роль либо роль и ее разрешение.
+ */
+@Getter
+@AllArgsConstructor
+public class RoleGrant {
+
+    private final String role;
+    private final String value;
+}
@@ -1,12 +1,34 @@
 package ru.auth.repository;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 import ru.auth.model.Role;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface RoleRepository extends JpaRepository<Role, Long> {
     Optional<Role> findByName(String name);
+
+    @Query("select r.name from Role r")
+    List<String> findAllNames();
+
+    /**
+     * Связи роль - родительская роль для построения иерархии.
+     */
+    @Query("select new ru.auth.repository.RoleGrant(r.name, p.name) from Role r join r.parents p")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    List<RoleGrant> findParentGrants();
+
+    /**
+     * Собственные разрешения ролей.
+     */
+    @Query("select new ru.auth.repository.RoleGrant(r.name, p) from Role r join r.permissions p")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    List<RoleGrant> findPermissionGrants();
 }
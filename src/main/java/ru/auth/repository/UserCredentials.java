@@ -0,0 +1,20 @@
+package ru.auth.repository;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Строка проекции пользователя для аутентификации: данные пользователя и одна из его ролей.
+ * Пользователь с несколькими ролями дает несколько строк, без ролей - одну строку с roleName = null.
+ * Объекты не управляются Hibernate: не попадают в контекст персистентности и не проверяются на изменения.
+ */
+@Getter
+@AllArgsConstructor
+public class UserCredentials {
+
+    private final String login;
+    private final String password;
+    private final boolean enabled;
+    private final long tokenVersion;
+    private final String roleName;
+}
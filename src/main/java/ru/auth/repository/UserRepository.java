@@ -1,9 +1,16 @@
 package ru.auth.repository;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import ru.auth.model.User;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -11,5 +18,23 @@ public interface UserRepository extends JpaRepository<User, Long> {
 
     Optional<User> findByLogin(String login);
 
+    /**
+     * Данные для аутентификации одним SQL запросом, без загрузки сущностей.
+     * Сущность {@link User} нужна только для изменений, для чтения достаточно этой проекции.
+     * @param login Логин пользователя.
+     * @return По строке на роль пользователя; пустой список, если пользователя нет.
+     */
+    @Query("select new ru.auth.repository.UserCredentials(u.login, u.password, u.enabled, u.tokenVersion, r.name) "
+            + "from User u left join u.roles r where u.login = :login")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    List<UserCredentials> findCredentialsByLogin(@Param("login") String login);
+
     Optional<User> findByEmail(String email);
+
+    @Query("select u.tokenVersion from User u where u.login = :login")
+    Optional<Long> findTokenVersionByLogin(@Param("login") String login);
+
+    @Modifying
+    @Query("update User u set u.password = :newHash where u.login = :login and u.password = :oldHash")
+    int updatePasswordHash(@Param("login") String login, @Param("oldHash") String oldHash, @Param("newHash") String newHash);
 }
\ No newline at end of file
@@ -0,0 +1,108 @@
+package ru.auth.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Метрики проверки токенов и эндпоинтов /auth.
+ * Все счетчики и таймеры регистрируются заранее, теги берутся только из перечислений,
+ * поэтому запись на горячем пути не ищет метры в реестре и не выделяет память.
+ */
+@Component
+public class AuthMetrics {
+
+    /**
+     * Итог проверки токена в фильтре или при интроспекции.
+     */
+    public enum TokenOutcome {
+        AUTHENTICATED,
+        EXPIRED,
+        BAD_SIGNATURE,
+        MALFORMED,
+        REVOKED,
+        UNKNOWN_USER,
+        /** Токен выдан до смены ролей или пароля, либо не подходит пользователю. */
+        STALE
+    }
+
+    public enum Endpoint {
+        REGISTER,
+        LOGIN,
+        REFRESH,
+        REVOKE,
+        INTROSPECT
+    }
+
+    public enum Outcome {
+        SUCCESS,
+        REJECTED,
+        BUSY,
+        /** Превышен лимит попыток входа. */
+        THROTTLED,
+        ERROR
+    }
+
+    private final Map<TokenOutcome, Counter> tokenOutcomes = new EnumMap<>(TokenOutcome.class);
+    private final Map<Endpoint, Map<Outcome, Counter>> endpointOutcomes = new EnumMap<>(Endpoint.class);
+    private final Timer verifyTimer;
+    private final Timer userLoadTimer;
+    private final Timer revocationCheckTimer;
+
+    @Autowired
+    public AuthMetrics(MeterRegistry registry) {
+        for (TokenOutcome outcome : TokenOutcome.values()) {
+            tokenOutcomes.put(outcome, Counter.builder("auth.token.outcome")
+                    .tag("outcome", tagValue(outcome))
+                    .register(registry));
+        }
+        for (Endpoint endpoint : Endpoint.values()) {
+            Map<Outcome, Counter> counters = new EnumMap<>(Outcome.class);
+            for (Outcome outcome : Outcome.values()) {
+                counters.put(outcome, Counter.builder("auth.requests")
+                        .tag("endpoint", tagValue(endpoint))
+                        .tag("outcome", tagValue(outcome))
+                        .register(registry));
+            }
+            endpointOutcomes.put(endpoint, counters);
+        }
+        this.verifyTimer = Timer.builder("auth.token.verify")
+                .description("Проверка подписи и разбор токена, включая кэш проверенных токенов")
+                .register(registry);
+        this.userLoadTimer = Timer.builder("auth.user.load")
+                .description("Загрузка пользователя для проверки токена, включая кэш")
+                .register(registry);
+        this.revocationCheckTimer = Timer.builder("auth.token.revocation.check").register(registry);
+    }
+
+    private static String tagValue(Enum<?> value) {
+        return value.name().toLowerCase(Locale.ROOT);
+    }
+
+    public void tokenOutcome(TokenOutcome outcome) {
+        tokenOutcomes.get(outcome).increment();
+    }
+
+    public void endpointOutcome(Endpoint endpoint, Outcome outcome) {
+        endpointOutcomes.get(endpoint).get(outcome).increment();
+    }
+
+    public void recordVerify(long nanos) {
+        verifyTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordUserLoad(long nanos) {
+        userLoadTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordRevocationCheck(long nanos) {
+        revocationCheckTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+}
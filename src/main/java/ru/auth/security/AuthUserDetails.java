@@ -0,0 +1,57 @@
+package ru.auth.security;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * UserDetails сервиса: помимо логина, пароля и ролей хранит версию токенов пользователя.
+ * Версия растет при смене ролей или сбросе пароля и делает недействительными ранее выданные токены.
+ * Authorities - итоговые права с учетом иерархии ролей; они же свернуты в маску {@link RoleRegistry},
+ * по которой работает авторизация. Роли, выданные напрямую, хранятся отдельно: именно они попадают в токен.
+ */
+public class AuthUserDetails extends User {
+
+    private final long tokenVersion;
+
+    private final long roleMask;
+
+    private final List<String> roleNames;
+
+    public AuthUserDetails(String username, String password,
+                           Collection<? extends GrantedAuthority> authorities, long tokenVersion) {
+        this(username, password, true, authorities, tokenVersion);
+    }
+
+    public AuthUserDetails(String username, String password, boolean enabled,
+                           Collection<? extends GrantedAuthority> authorities, long tokenVersion) {
+        this(username, password, enabled, authorities, null, tokenVersion);
+    }
+
+    /**
+     * @param authorities Итоговые права пользователя.
+     * @param roleNames Роли, выданные напрямую, без префикса ROLE_; null - взять роли из authorities.
+     */
+    public AuthUserDetails(String username, String password, boolean enabled,
+                           Collection<? extends GrantedAuthority> authorities, List<String> roleNames,
+                           long tokenVersion) {
+        super(username, password, enabled, true, true, true, authorities);
+        this.tokenVersion = tokenVersion;
+        this.roleMask = RoleRegistry.mask(authorities);
+        this.roleNames = roleNames != null ? List.copyOf(roleNames) : JwtUtil.roleNames(this);
+    }
+
+    public long getTokenVersion() {
+        return tokenVersion;
+    }
+
+    public long getRoleMask() {
+        return roleMask;
+    }
+
+    public List<String> getRoleNames() {
+        return roleNames;
+    }
+}
@@ -0,0 +1,254 @@
+package ru.auth.security;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Быстрая проверка токенов HS256 той формы, которую выпускает {@link JwtUtil}.
+ * Заголовок сравнивается со строкой, а не разбирается; подпись считается переиспользуемым Mac потока
+ * прямо по байтам header.payload; из payload потоковым парсером читаются только нужные поля.
+ * Если токен хоть чем-то отличается от ожидаемого (другой заголовок, неверная подпись, истекший срок,
+ * незнакомый claim вроде nbf), возвращается null и токен проверяет jjwt - он же формирует нужное исключение.
+ */
+final class FastJwtVerifier {
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private static final int SIGNATURE_LENGTH = 32;
+
+    private static final byte[] BASE64_URL = new byte[128];
+
+    static {
+        Arrays.fill(BASE64_URL, (byte) -1);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+        for (int i = 0; i < alphabet.length(); i++) {
+            BASE64_URL[alphabet.charAt(i)] = (byte) i;
+        }
+    }
+
+    private final String expectedHeader;
+    private final SecretKey key;
+    // Mac и буферы переиспользуются через общий пул, а не ThreadLocal: в режиме виртуальных потоков
+    // каждый запрос идет в новом потоке, и ThreadLocal заново создавал бы Mac на каждый токен
+    private final Queue<State> states = new ConcurrentLinkedQueue<>();
+
+    /**
+     * @param expectedHeader Закодированный заголовок токенов, которые выпускает этот узел.
+     * @param key Ключ HS256.
+     */
+    FastJwtVerifier(String expectedHeader, SecretKey key) {
+        this.expectedHeader = expectedHeader;
+        this.key = key;
+    }
+
+    /**
+     * @param token JWT токен.
+     * @return Проверенный токен или null, если токен нужно проверить обычным путем.
+     */
+    VerifiedToken verify(String token) {
+        int headerEnd = expectedHeader.length();
+        if (token.length() <= headerEnd || token.charAt(headerEnd) != '.'
+                || !token.regionMatches(0, expectedHeader, 0, headerEnd)) {
+            return null;
+        }
+        int payloadEnd = token.indexOf('.', headerEnd + 1);
+        if (payloadEnd < 0 || token.indexOf('.', payloadEnd + 1) >= 0) {
+            return null;
+        }
+
+        State s = states.poll();
+        if (s == null) {
+            s = new State(key);
+        }
+        try {
+            return verify(token, headerEnd, payloadEnd, s);
+        } finally {
+            states.offer(s);
+        }
+    }
+
+    private static VerifiedToken verify(String token, int headerEnd, int payloadEnd, State s) {
+        byte[] buffer = s.buffer(payloadEnd);
+        for (int i = 0; i < payloadEnd; i++) {
+            char c = token.charAt(i);
+            if (c > 127) {
+                return null;
+            }
+            buffer[i] = (byte) c;
+        }
+        if (!s.signatureMatches(buffer, payloadEnd, token, payloadEnd + 1)) {
+            return null;
+        }
+
+        int payloadLength = decode(token, headerEnd + 1, payloadEnd, buffer);
+        if (payloadLength < 0) {
+            return null;
+        }
+        try {
+            return parsePayload(token, buffer, payloadLength);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static VerifiedToken parsePayload(String token, byte[] payload, int length) throws IOException {
+        String subject = null;
+        String id = null;
+        long issuedAt = -1;
+        long expiration = -1;
+        Long version = null;
+        List<String> roles = Collections.emptyList();
+
+        try (JsonParser parser = JSON.createParser(payload, 0, length)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "sub":
+                        if (value != JsonToken.VALUE_STRING) {
+                            return null;
+                        }
+                        subject = parser.getText();
+                        break;
+                    case "jti":
+                        if (value != JsonToken.VALUE_STRING) {
+                            return null;
+                        }
+                        id = parser.getText();
+                        break;
+                    case "iat":
+                        if (value != JsonToken.VALUE_NUMBER_INT) {
+                            return null;
+                        }
+                        issuedAt = parser.getLongValue();
+                        break;
+                    case "exp":
+                        if (value != JsonToken.VALUE_NUMBER_INT) {
+                            return null;
+                        }
+                        expiration = parser.getLongValue();
+                        break;
+                    case JwtUtil.VERSION_CLAIM:
+                        if (value != JsonToken.VALUE_NUMBER_INT) {
+                            return null;
+                        }
+                        version = parser.getLongValue();
+                        break;
+                    case JwtUtil.ROLES_CLAIM:
+                        if (value != JsonToken.START_ARRAY) {
+                            return null;
+                        }
+                        List<String> parsed = new ArrayList<>(4);
+                        while (parser.nextToken() == JsonToken.VALUE_STRING) {
+                            parsed.add(parser.getText());
+                        }
+                        if (parser.currentToken() != JsonToken.END_ARRAY) {
+                            return null;
+                        }
+                        roles = Collections.unmodifiableList(parsed);
+                        break;
+                    default:
+                        // Прочие claims (nbf, aud и т.п.) требуют полной проверки
+                        return null;
+                }
+            }
+            if (parser.currentToken() != JsonToken.END_OBJECT) {
+                return null;
+            }
+        }
+
+        if (subject == null || expiration < 0 || expiration * 1000 <= System.currentTimeMillis()) {
+            return null;
+        }
+        return new VerifiedToken(token, subject, issuedAt < 0 ? null : new Date(issuedAt * 1000),
+                new Date(expiration * 1000), id, roles, version);
+    }
+
+    /**
+     * Декодирует base64url без дополнения прямо из строки в буфер.
+     * @return Число байт или -1, если встретился недопустимый символ.
+     */
+    private static int decode(String source, int from, int to, byte[] target) {
+        int bits = 0;
+        int bitCount = 0;
+        int length = 0;
+        for (int i = from; i < to; i++) {
+            char c = source.charAt(i);
+            int value = c < 128 ? BASE64_URL[c] : -1;
+            if (value < 0) {
+                return -1;
+            }
+            bits = (bits << 6) | value;
+            bitCount += 6;
+            if (bitCount >= 8) {
+                bitCount -= 8;
+                if (length == target.length) {
+                    return -1;
+                }
+                target[length++] = (byte) (bits >> bitCount);
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Mac и буферы одной проверки: пока состояние взято из пула, им пользуется только один поток.
+     */
+    private static final class State {
+        private final Mac mac;
+        private final byte[] expected = new byte[SIGNATURE_LENGTH];
+        private final byte[] actual = new byte[SIGNATURE_LENGTH];
+        private byte[] buffer = new byte[512];
+
+        private State(SecretKey key) {
+            try {
+                this.mac = Mac.getInstance(key.getAlgorithm());
+                this.mac.init(key);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("HMAC недоступен", e);
+            }
+        }
+
+        private byte[] buffer(int size) {
+            if (buffer.length < size) {
+                buffer = new byte[Math.max(size, buffer.length * 2)];
+            }
+            return buffer;
+        }
+
+        private boolean signatureMatches(byte[] signingInput, int length, String token, int signatureStart) {
+            if (decode(token, signatureStart, token.length(), actual) != SIGNATURE_LENGTH) {
+                return false;
+            }
+            try {
+                mac.update(signingInput, 0, length);
+                mac.doFinal(expected, 0);
+            } catch (GeneralSecurityException e) {
+                mac.reset();
+                return false;
+            }
+            // Сравнение за постоянное время
+            int diff = 0;
+            for (int i = 0; i < SIGNATURE_LENGTH; i++) {
+                diff |= expected[i] ^ actual[i];
+            }
+            return diff == 0;
+        }
+    }
+}
@@ -0,0 +1,478 @@
+package ru.auth.security;
+
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.auth.model.JwtSigningKey;
+import ru.auth.repository.JwtSigningKeyRepository;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Набор ключей подписи токенов, доступных по kid.
+ * HS256 (по умолчанию) - один ключ из jwt.secret, без ротации и без публикации.
+ * RS256/ES256 - пары ключей хранятся в базе (jwt_signing_keys) и общие для всех реплик: подписывает самый новый
+ * действующий ключ, выведенный из оборота остается для проверки, пока не истекут подписанные им токены.
+ * Ключ меняется раз в jwt.keys.rotation-interval-ms; узлы перечитывают набор раз в jwt.keys.refresh-interval-ms
+ * и при токене с незнакомым kid. Открытые ключи публикуются в JWKS, чтобы другие сервисы проверяли токены сами.
+ */
+@Slf4j
+@Component
+public class JwtKeyRing {
+
+    private static final String KEY_CIPHER = "AES/GCM/NoPadding";
+    private static final int GCM_IV_BYTES = 12;
+    private static final int GCM_TAG_BITS = 128;
+
+    // Не чаще, чем раз в секунду: поток токенов с выдуманным kid не должен нагружать базу
+    private static final long UNKNOWN_KID_RELOAD_INTERVAL_MS = 1000;
+
+    private final SignatureAlgorithm algorithm;
+    private final long rotationIntervalMs;
+    private final long retentionMs;
+    private final SecretKeySpec encryptionKey;
+    private final LongSupplier clock;
+    private final SecureRandom random = new SecureRandom();
+
+    // null - ключи только в памяти узла
+    private final JwtSigningKeyRepository repository;
+    private final TransactionTemplate transactionTemplate;
+
+    // Смена и перечитывание ключей; чтение по kid идет без блокировок
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // kid -> ключ; заменяется целиком при каждом перечитывании
+    private volatile Map<String, SigningKey> keys = Collections.emptyMap();
+
+    private volatile SigningKey current;
+    private volatile Map<String, Object> jwks;
+    private volatile long loadedAt;
+
+    @Autowired
+    public JwtKeyRing(@Value("${jwt.signing.algorithm:HS256}") String algorithm,
+                      @Value("${jwt.secret:mySuperSecretKey}") String secret,
+                      @Value("${jwt.expiration.ms:300000}") long expirationMs,
+                      @Value("${jwt.keys.rotation-interval-ms:86400000}") long rotationIntervalMs,
+                      @Value("${jwt.keys.refresh-interval-ms:60000}") long refreshIntervalMs,
+                      JwtSigningKeyRepository repository,
+                      PlatformTransactionManager transactionManager) {
+        this(algorithm, secret, expirationMs, rotationIntervalMs, refreshIntervalMs,
+                repository, transactionManager, System::currentTimeMillis);
+    }
+
+    /**
+     * Набор без базы: пары ключей RS256/ES256 генерируются при создании и живут только в памяти.
+     * Для бенчмарков и тестов; при нескольких репликах каждая подписывала бы своим ключом.
+     */
+    public JwtKeyRing(String algorithm, String secret, long expirationMs) {
+        this(algorithm, secret, expirationMs, 0, 0, null, null, System::currentTimeMillis);
+    }
+
+    JwtKeyRing(String algorithm, String secret, long expirationMs, long rotationIntervalMs, long refreshIntervalMs,
+               JwtSigningKeyRepository repository, PlatformTransactionManager transactionManager, LongSupplier clock) {
+        this.algorithm = parseAlgorithm(algorithm);
+        this.rotationIntervalMs = rotationIntervalMs;
+        // Узел подписывает выведенным ключом, пока не перечитал набор; сверху запас на расхождение часов
+        this.retentionMs = expirationMs + refreshIntervalMs + 60_000;
+        this.encryptionKey = new SecretKeySpec(sha256(("jwt-keys:" + secret).getBytes(StandardCharsets.UTF_8)), "AES");
+        this.clock = clock;
+        this.repository = repository;
+        this.transactionTemplate = transactionManager != null ? new TransactionTemplate(transactionManager) : null;
+        if (this.algorithm.isHmac()) {
+            SecretKeySpec key = deriveKey(secret);
+            SigningKey signingKey = new SigningKey("hs256-" + fingerprint(key.getEncoded()), key, key, clock.getAsLong());
+            install(Collections.singletonMap(signingKey.kid, signingKey), signingKey);
+        } else if (repository == null) {
+            rotate();
+        } else {
+            refresh();
+        }
+    }
+
+    private static SignatureAlgorithm parseAlgorithm(String name) {
+        switch (name) {
+            case "HS256":
+                return SignatureAlgorithm.HS256;
+            case "RS256":
+                return SignatureAlgorithm.RS256;
+            case "ES256":
+                return SignatureAlgorithm.ES256;
+            default:
+                // EdDSA появится только с переходом на jjwt 0.12
+                throw new IllegalArgumentException("Неподдерживаемый алгоритм подписи: " + name);
+        }
+    }
+
+    /**
+     * Строит ключ HS256 из секрета один раз при старте.
+     * Секрет из настроек может быть любой длины, поэтому ключом служит его SHA-256:
+     * он всегда 256 бит, как того требует jjwt для HS256.
+     */
+    private static SecretKeySpec deriveKey(String secret) {
+        return new SecretKeySpec(sha256(secret.getBytes(StandardCharsets.UTF_8)), SignatureAlgorithm.HS256.getJcaName());
+    }
+
+    /**
+     * Перечитывает ключи из базы и, если текущему ключу пора на смену, меняет его.
+     * Сменить ключ могут решить несколько узлов сразу, но выведет его из оборота только один (условное обновление),
+     * остальные просто прочитают новый ключ.
+     */
+    @Scheduled(fixedDelayString = "${jwt.keys.refresh-interval-ms:60000}",
+            initialDelayString = "${jwt.keys.refresh-interval-ms:60000}")
+    public void refresh() {
+        if (algorithm.isHmac() || repository == null) {
+            return;
+        }
+        lock.lock();
+        try {
+            long now = clock.getAsLong();
+            List<JwtSigningKey> stored = load();
+            JwtSigningKey newest = newest(stored);
+            if (newest == null || newest.getCreatedAt().toEpochMilli() + rotationIntervalMs <= now) {
+                rotateStored(newest != null ? newest.getKid() : null, now);
+                stored = load();
+            }
+            install(stored, now);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Выпускает новую пару ключей и делает ее текущей, не дожидаясь jwt.keys.rotation-interval-ms.
+     */
+    public void rotate() {
+        if (algorithm.isHmac()) {
+            return;
+        }
+        lock.lock();
+        try {
+            long now = clock.getAsLong();
+            if (repository != null) {
+                rotateStored(current != null ? current.kid : null, now);
+                install(load(), now);
+                return;
+            }
+            KeyPair pair = Keys.keyPairFor(algorithm);
+            SigningKey next = new SigningKey(UUID.randomUUID().toString(), pair.getPrivate(), pair.getPublic(), now);
+            Map<String, SigningKey> installed = new HashMap<>();
+            for (SigningKey key : keys.values()) {
+                if (key.retiredAt == 0) {
+                    key.retiredAt = now;
+                }
+                if (key.retiredAt + retentionMs >= now) {
+                    installed.put(key.kid, key);
+                }
+            }
+            installed.put(next.kid, next);
+            install(installed, next);
+            log.info("Ключ подписи {} сменен, kid={}", algorithm.getValue(), next.kid);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private List<JwtSigningKey> load() {
+        return transactionTemplate.execute(status -> repository.findByAlgorithm(algorithm.getValue()));
+    }
+
+    private void rotateStored(String previousKid, long now) {
+        Instant at = Instant.ofEpochMilli(now);
+        String kid = transactionTemplate.execute(status -> {
+            if (previousKid != null && repository.retire(previousKid, at) == 0) {
+                // Ключ уже сменил другой узел
+                return null;
+            }
+            KeyPair pair = Keys.keyPairFor(algorithm);
+            JwtSigningKey key = new JwtSigningKey(UUID.randomUUID().toString(), algorithm.getValue(),
+                    base64(pair.getPublic().getEncoded()), encrypt(pair.getPrivate().getEncoded()), at, null);
+            repository.save(key);
+            // Действующие ключи, созданные одновременно другими узлами при пустой таблице
+            repository.retireAllExcept(key.getKid(), at);
+            repository.deleteRetiredBefore(Instant.ofEpochMilli(now - retentionMs));
+            return key.getKid();
+        });
+        if (kid != null) {
+            log.info("Ключ подписи {} сменен, kid={}", algorithm.getValue(), kid);
+        }
+    }
+
+    /**
+     * Собирает набор из строк базы. Уже разобранные ключи берутся из текущего набора,
+     * закрытый ключ расшифровывается только у того, которым узел будет подписывать.
+     */
+    private void install(List<JwtSigningKey> stored, long now) {
+        JwtSigningKey newest = newest(stored);
+        if (newest == null) {
+            throw new IllegalStateException("Нет действующего ключа подписи " + algorithm.getValue());
+        }
+        Map<String, SigningKey> known = keys;
+        Map<String, SigningKey> installed = new HashMap<>();
+        SigningKey signer = null;
+        for (JwtSigningKey row : stored) {
+            long retiredAt = row.getRetiredAt() != null ? row.getRetiredAt().toEpochMilli() : 0;
+            if (retiredAt != 0 && retiredAt + retentionMs < now) {
+                continue;
+            }
+            boolean signs = row == newest;
+            SigningKey key = known.get(row.getKid());
+            if (key == null || (signs && key.signingKey == null)) {
+                key = new SigningKey(row.getKid(), signs ? decodePrivate(row) : null,
+                        decodePublic(row.getPublicKey()), row.getCreatedAt().toEpochMilli());
+            }
+            key.retiredAt = retiredAt;
+            installed.put(key.kid, key);
+            if (signs) {
+                signer = key;
+            }
+        }
+        install(installed, signer);
+        loadedAt = now;
+    }
+
+    private void install(Map<String, SigningKey> installed, SigningKey signer) {
+        keys = installed;
+        current = signer;
+        jwks = buildJwks();
+    }
+
+    // Самый новый действующий ключ; при равном времени выбор одинаков на всех узлах
+    private static JwtSigningKey newest(List<JwtSigningKey> stored) {
+        JwtSigningKey newest = null;
+        for (JwtSigningKey key : stored) {
+            if (key.getRetiredAt() == null && (newest == null
+                    || key.getCreatedAt().compareTo(newest.getCreatedAt()) > 0
+                    || (key.getCreatedAt().equals(newest.getCreatedAt()) && key.getKid().compareTo(newest.getKid()) > 0))) {
+                newest = key;
+            }
+        }
+        return newest;
+    }
+
+    public SignatureAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * @return Текущий ключ подписи.
+     */
+    public SigningKey current() {
+        return current;
+    }
+
+    /**
+     * Ищет ключ проверки по kid из заголовка токена.
+     * Незнакомый kid может оказаться новым ключом, который другой узел уже выпустил, а этот еще не перечитал:
+     * тогда набор перечитывается из базы, но не чаще раза в секунду.
+     * @param kid Идентификатор ключа; у токенов HS256, выпущенных до появления kid, его нет.
+     * @return Ключ проверки или null, если такого ключа нет.
+     */
+    public Key verificationKey(String kid) {
+        if (kid == null) {
+            return algorithm.isHmac() ? current.verificationKey : null;
+        }
+        SigningKey key = keys.get(kid);
+        if (key == null && reloadForUnknownKid()) {
+            key = keys.get(kid);
+        }
+        return key != null ? key.verificationKey : null;
+    }
+
+    private boolean reloadForUnknownKid() {
+        if (algorithm.isHmac() || repository == null
+                || clock.getAsLong() - loadedAt < UNKNOWN_KID_RELOAD_INTERVAL_MS) {
+            return false;
+        }
+        lock.lock();
+        try {
+            long now = clock.getAsLong();
+            // Пока ждали блокировку, набор мог перечитать другой поток
+            if (now - loadedAt >= UNKNOWN_KID_RELOAD_INTERVAL_MS) {
+                install(load(), now);
+            }
+            return true;
+        } catch (RuntimeException e) {
+            log.warn("Не удалось перечитать ключи подписи", e);
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return JWK Set с открытыми ключами (для HS256 пустой: секрет не публикуется).
+     */
+    public Map<String, Object> getJwks() {
+        return jwks;
+    }
+
+    private Map<String, Object> buildJwks() {
+        List<Map<String, Object>> published = new ArrayList<>();
+        if (!algorithm.isHmac()) {
+            for (SigningKey key : keys.values()) {
+                published.add(toJwk(key));
+            }
+        }
+        return Collections.singletonMap("keys", published);
+    }
+
+    private Map<String, Object> toJwk(SigningKey key) {
+        Map<String, Object> jwk = new LinkedHashMap<>();
+        jwk.put("kid", key.kid);
+        jwk.put("use", "sig");
+        jwk.put("alg", algorithm.getValue());
+        if (key.verificationKey instanceof RSAPublicKey) {
+            RSAPublicKey rsa = (RSAPublicKey) key.verificationKey;
+            jwk.put("kty", "RSA");
+            jwk.put("n", base64Url(unsigned(rsa.getModulus(), 0)));
+            jwk.put("e", base64Url(unsigned(rsa.getPublicExponent(), 0)));
+        } else if (key.verificationKey instanceof ECPublicKey) {
+            ECPublicKey ec = (ECPublicKey) key.verificationKey;
+            jwk.put("kty", "EC");
+            jwk.put("crv", "P-256");
+            jwk.put("x", base64Url(unsigned(ec.getW().getAffineX(), 32)));
+            jwk.put("y", base64Url(unsigned(ec.getW().getAffineY(), 32)));
+        }
+        return jwk;
+    }
+
+    private PublicKey decodePublic(String encoded) {
+        try {
+            return keyFactory().generatePublic(new X509EncodedKeySpec(Base64.getDecoder().decode(encoded)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Не удалось разобрать открытый ключ подписи", e);
+        }
+    }
+
+    private PrivateKey decodePrivate(JwtSigningKey row) {
+        byte[] stored = Base64.getDecoder().decode(row.getPrivateKey());
+        try {
+            Cipher cipher = Cipher.getInstance(KEY_CIPHER);
+            cipher.init(Cipher.DECRYPT_MODE, encryptionKey, new GCMParameterSpec(GCM_TAG_BITS, stored, 0, GCM_IV_BYTES));
+            byte[] pkcs8 = cipher.doFinal(stored, GCM_IV_BYTES, stored.length - GCM_IV_BYTES);
+            return keyFactory().generatePrivate(new PKCS8EncodedKeySpec(pkcs8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Закрытый ключ kid=" + row.getKid()
+                    + " не расшифровывается: jwt.secret отличается от узла, который его создал", e);
+        }
+    }
+
+    private String encrypt(byte[] pkcs8) {
+        try {
+            byte[] stored = new byte[GCM_IV_BYTES + pkcs8.length + GCM_TAG_BITS / 8];
+            byte[] iv = new byte[GCM_IV_BYTES];
+            random.nextBytes(iv);
+            System.arraycopy(iv, 0, stored, 0, GCM_IV_BYTES);
+            Cipher cipher = Cipher.getInstance(KEY_CIPHER);
+            cipher.init(Cipher.ENCRYPT_MODE, encryptionKey, new GCMParameterSpec(GCM_TAG_BITS, iv));
+            cipher.doFinal(pkcs8, 0, pkcs8.length, stored, GCM_IV_BYTES);
+            return base64(stored);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Не удалось зашифровать ключ подписи", e);
+        }
+    }
+
+    private KeyFactory keyFactory() throws NoSuchAlgorithmException {
+        return KeyFactory.getInstance(algorithm.isRsa() ? "RSA" : "EC");
+    }
+
+    // Беззнаковое big-endian представление; length > 0 дополняет нулями слева до фиксированной длины
+    private static byte[] unsigned(BigInteger value, int length) {
+        byte[] bytes = value.toByteArray();
+        if (bytes.length > 1 && bytes[0] == 0) {
+            bytes = Arrays.copyOfRange(bytes, 1, bytes.length);
+        }
+        if (length > bytes.length) {
+            byte[] padded = new byte[length];
+            System.arraycopy(bytes, 0, padded, length - bytes.length, bytes.length);
+            return padded;
+        }
+        return bytes;
+    }
+
+    private static String base64(byte[] bytes) {
+        return Base64.getEncoder().encodeToString(bytes);
+    }
+
+    private static String base64Url(byte[] bytes) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    private static String fingerprint(byte[] keyBytes) {
+        return base64Url(Arrays.copyOf(sha256(keyBytes), 6));
+    }
+
+    private static byte[] sha256(byte[] bytes) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(bytes);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+    }
+
+    /**
+     * Ключ подписи с заранее построенными объектами Key.
+     * У выведенных из оборота ключей, прочитанных из базы, закрытого ключа нет: они только проверяют.
+     */
+    public static final class SigningKey {
+        private final String kid;
+        private final Key signingKey;
+        private final Key verificationKey;
+        private final long createdAt;
+        private volatile long retiredAt;
+
+        private SigningKey(String kid, Key signingKey, Key verificationKey, long createdAt) {
+            this.kid = kid;
+            this.signingKey = signingKey;
+            this.verificationKey = verificationKey;
+            this.createdAt = createdAt;
+        }
+
+        public String getKid() {
+            return kid;
+        }
+
+        public Key getSigningKey() {
+            return signingKey;
+        }
+
+        public long getCreatedAt() {
+            return createdAt;
+        }
+    }
+}
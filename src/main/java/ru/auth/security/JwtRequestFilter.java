@@ -7,31 +7,31 @@ import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
-import ru.auth.config.CustomUserDetailsService;
-import ru.auth.service.RevokedTokenService;
 
-import javax.servlet.FilterChain;
-import javax.servlet.ServletException;
-import javax.servlet.http.HttpServletRequest;
-import javax.servlet.http.HttpServletResponse;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import java.io.IOException;
 
 @Component
 public class JwtRequestFilter extends OncePerRequestFilter {
 
-    private final CustomUserDetailsService userDetailsService;
-    private final JwtUtil jwtUtil;
-    private final RevokedTokenService revokedTokenService;
+    /** Атрибут запроса с уже проверенным токеном, чтобы контроллеры не разбирали его повторно. */
+    public static final String VERIFIED_TOKEN_ATTRIBUTE = "ru.auth.security.JwtRequestFilter.TOKEN";
+
+    private final TokenAuthenticator tokenAuthenticator;
+    private final WebAuthenticationDetailsSource authenticationDetailsSource = new WebAuthenticationDetailsSource();
 
     @Autowired
-    public JwtRequestFilter(CustomUserDetailsService userDetailsService, JwtUtil jwtUtil, RevokedTokenService revokedTokenService) {
-        this.userDetailsService = userDetailsService;
-        this.jwtUtil = jwtUtil;
-        this.revokedTokenService = revokedTokenService;
+    public JwtRequestFilter(TokenAuthenticator tokenAuthenticator) {
+        this.tokenAuthenticator = tokenAuthenticator;
     }
 
     /**
      * Метод, который будет выполняться для каждого входящего запроса.
+     * Токен проверяет {@link TokenAuthenticator}; невалидный токен не прерывает запрос,
+     * он просто идет дальше без аутентификации.
      * @param request HTTP запрос.
      * @param response HTTP ответ.
      * @param filterChain Цепочка фильтров.
@@ -41,33 +41,20 @@ public class JwtRequestFilter extends OncePerRequestFilter {
             throws ServletException, IOException {
 
         final String authorizationHeader = request.getHeader("Authorization");
-        String username = null;
-        String jwt = null;
-
-        if (authorizationHeader != null && authorizationHeader.startsWith("Bearer ")) {
-            jwt = authorizationHeader.substring(7);
-            try {
-                username = jwtUtil.extractUsername(jwt);
-            } catch (Exception e) {
-
-            }
-        }
-
-        if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails = this.userDetailsService.loadUserByUsername(username);
 
-            boolean isTokenValid = jwtUtil.validateToken(jwt, userDetails);
-            boolean isTokenRevoked = revokedTokenService.isTokenRevoked(jwt);
-
-            // Проверяем, что логин совпадает и токен не истек
-            if (isTokenValid && !isTokenRevoked) {
-                UsernamePasswordAuthenticationToken authenticationToken = new UsernamePasswordAuthenticationToken(
-                        userDetails, null, userDetails.getAuthorities());
-                authenticationToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+        if (authorizationHeader != null && authorizationHeader.startsWith("Bearer ")
+                && SecurityContextHolder.getContext().getAuthentication() == null) {
+            TokenAuthenticator.Result result = tokenAuthenticator.authenticate(authorizationHeader.substring(7));
+            if (result.isAuthenticated()) {
+                UserDetails userDetails = result.getUserDetails();
+                UsernamePasswordAuthenticationToken authenticationToken =
+                        new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
+                authenticationToken.setDetails(authenticationDetailsSource.buildDetails(request));
                 SecurityContextHolder.getContext().setAuthentication(authenticationToken);
+                request.setAttribute(VERIFIED_TOKEN_ATTRIBUTE, result.getToken());
             }
         }
-        
+
         filterChain.doFilter(request, response);
     }
-}
\ No newline at end of file
+}
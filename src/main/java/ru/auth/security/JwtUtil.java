@@ -1,84 +1,133 @@
 package ru.auth.security;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.SigningKeyResolverAdapter;
+import io.jsonwebtoken.UnsupportedJwtException;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
+import javax.crypto.SecretKey;
+import java.security.Key;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.function.Function;
+import java.util.UUID;
 
 @Component
 public class JwtUtil {
 
-    @Value("${jwt.secret:mySuperSecretKey}")
-    private String secret;
+    static final String ROLES_CLAIM = "roles";
 
-    @Value("${jwt.expiration.ms:3600000}")
-    private long expirationMs;
+    static final String VERSION_CLAIM = "ver";
 
+    private static final String ROLE_PREFIX = RoleRegistry.ROLE_PREFIX;
 
-    /**
-     * Извлекает логин пользователя из JWT токена.
-     * @param token JWT токен.
-     * @return Логин пользователя.
-     */
-    public String extractUsername(String token) {
-        return extractClaim(token, Claims::getSubject);
+    private final JwtKeyRing keyRing;
+
+    private final JwtParser parser;
+
+    // Только для HS256; null, если токены проверяет jjwt
+    private final FastJwtVerifier fastVerifier;
+
+    private final long expirationMs;
+
+    @Autowired
+    public JwtUtil(JwtKeyRing keyRing,
+                   @Value("${jwt.expiration.ms:300000}") long expirationMs) {
+        this.keyRing = keyRing;
+        this.parser = Jwts.parserBuilder().setSigningKeyResolver(new KeyRingResolver(keyRing)).build();
+        this.fastVerifier = keyRing.getAlgorithm().isHmac() ? createFastVerifier(keyRing.current()) : null;
+        this.expirationMs = expirationMs;
     }
 
     /**
-     * Извлекает дату истечения срока действия из JWT токена.
-     * @param token JWT токен.
-     * @return Дата истечения срока действия.
+     * Заголовок у всех токенов HS256 одинаковый, поэтому он берется из пробного токена,
+     * подписанного тем же ключом, что и настоящие.
      */
-    public Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
+    private static FastJwtVerifier createFastVerifier(JwtKeyRing.SigningKey signingKey) {
+        String probe = Jwts.builder()
+                .setHeaderParam(JwsHeader.KEY_ID, signingKey.getKid())
+                .setSubject("probe")
+                .signWith(signingKey.getSigningKey(), SignatureAlgorithm.HS256)
+                .compact();
+        return new FastJwtVerifier(probe.substring(0, probe.indexOf('.')), (SecretKey) signingKey.getSigningKey());
     }
 
     /**
-     * Общий метод для извлечения любого Claim из JWT токена.
+     * Проверяет подпись и срок действия токена и разбирает его claims за один проход.
      * @param token JWT токен.
-     * @param claimsResolver Функция, которая извлекает нужный Claim.
-     * @param <T> Тип возвращаемого Claim.
-     * @return Извлеченное значение Claim.
+     * @return Проверенный токен.
+     * @throws JwtException если подпись не сходится, формат неверный или срок действия истек.
+     * @throws IllegalArgumentException если токен пустой.
      */
-    public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
-        final Claims claims = extractAllClaims(token);
-        return claimsResolver.apply(claims);
+    public VerifiedToken verify(String token) {
+        if (fastVerifier != null && token != null) {
+            VerifiedToken verified = fastVerifier.verify(token);
+            if (verified != null) {
+                return verified;
+            }
+        }
+        Claims claims = parser.parseClaimsJws(token).getBody();
+        return new VerifiedToken(
+                token,
+                claims.getSubject(),
+                claims.getIssuedAt(),
+                claims.getExpiration(),
+                claims.getId(),
+                extractRoles(claims),
+                extractVersion(claims)
+        );
     }
 
-    /**
-     * Извлекает все Claims из JWT токена.
-     * @param token JWT токен.
-     * @return Объект Claims.
-     */
-    private Claims extractAllClaims(String token) {
-        return Jwts.parser().setSigningKey(secret).parseClaimsJws(token).getBody();
+    @SuppressWarnings("unchecked")
+    private static List<String> extractRoles(Claims claims) {
+        Object roles = claims.get(ROLES_CLAIM);
+        if (roles instanceof List) {
+            return Collections.unmodifiableList((List<String>) roles);
+        }
+        return Collections.emptyList();
+    }
+
+    private static Long extractVersion(Claims claims) {
+        Object version = claims.get(VERSION_CLAIM);
+        return version instanceof Number ? ((Number) version).longValue() : null;
     }
 
     /**
-     * Проверяет, действителен ли JWT токен для данного пользователя.
-     * @param token JWT токен.
+     * Проверяет, действителен ли уже разобранный токен для данного пользователя.
+     * @param token Проверенный токен.
      * @param userDetails Информация о пользователе.
      * @return true, если токен действителен, false в противном случае.
      */
-    public boolean validateToken(String token, UserDetails userDetails) {
-        final String username = extractUsername(token);
-        return (username.equals(userDetails.getUsername()) && !isTokenExpired(token));
+    public boolean validateToken(VerifiedToken token, UserDetails userDetails) {
+        return token.getSubject().equals(userDetails.getUsername()) && userDetails.isEnabled() && !token.isExpired();
     }
 
     /**
-     * Проверяет, истек ли срок действия JWT токена.
-     * @param token JWT токен.
-     * @return true, если срок действия истек, false в противном случае.
+     * Имена ролей среди прав пользователя, без префикса ROLE_. Разрешения (authority без префикса) пропускаются.
+     * @param userDetails Информация о пользователе.
+     * @return Список имен ролей.
      */
-    private boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+    public static List<String> roleNames(UserDetails userDetails) {
+        List<String> roles = new ArrayList<>(userDetails.getAuthorities().size());
+        for (GrantedAuthority authority : userDetails.getAuthorities()) {
+            String name = authority.getAuthority();
+            if (name.startsWith(ROLE_PREFIX)) {
+                roles.add(name.substring(ROLE_PREFIX.length()));
+            }
+        }
+        return roles;
     }
 
     /**
@@ -88,6 +137,13 @@ public class JwtUtil {
      */
     public String generateToken(UserDetails userDetails) {
         Map<String, Object> claims = new HashMap<>();
+        // Роли и версия зашиваются в токен, чтобы фильтр мог обойтись без обращения к базе
+        // В токен идут только роли, выданные напрямую: унаследованные права восстанавливаются по текущей иерархии
+        claims.put(ROLES_CLAIM, userDetails instanceof AuthUserDetails
+                ? ((AuthUserDetails) userDetails).getRoleNames() : roleNames(userDetails));
+        if (userDetails instanceof AuthUserDetails) {
+            claims.put(VERSION_CLAIM, ((AuthUserDetails) userDetails).getTokenVersion());
+        }
         return createToken(claims, userDetails.getUsername());
     }
 
@@ -98,14 +154,41 @@ public class JwtUtil {
      * @return Сгенерированный JWT токен.
      */
     private String createToken(Map<String, Object> claims, String subject) {
+        long now = System.currentTimeMillis();
+        JwtKeyRing.SigningKey signingKey = keyRing.current();
         return Jwts.builder()
                 .setClaims(claims)
+                .setId(UUID.randomUUID().toString())
                 .setSubject(subject)
-                .setIssuedAt(new Date(System.currentTimeMillis()))
-                .setExpiration(new Date(System.currentTimeMillis() + expirationMs))
-                .signWith(SignatureAlgorithm.HS256, secret)
+                .setIssuedAt(new Date(now))
+                .setExpiration(new Date(now + expirationMs))
+                .setHeaderParam(JwsHeader.KEY_ID, signingKey.getKid())
+                .signWith(signingKey.getSigningKey(), keyRing.getAlgorithm())
                 .compact();
     }
 
-
+    /**
+     * Выбирает ключ проверки по kid из заголовка. Токен, подписанный другим алгоритмом,
+     * отклоняется до проверки подписи, чтобы открытый ключ нельзя было использовать как секрет HMAC.
+     */
+    private static final class KeyRingResolver extends SigningKeyResolverAdapter {
+
+        private final JwtKeyRing keyRing;
+
+        private KeyRingResolver(JwtKeyRing keyRing) {
+            this.keyRing = keyRing;
+        }
+
+        @Override
+        public Key resolveSigningKey(JwsHeader header, Claims claims) {
+            if (!keyRing.getAlgorithm().getValue().equals(header.getAlgorithm())) {
+                throw new UnsupportedJwtException("Неожиданный алгоритм подписи: " + header.getAlgorithm());
+            }
+            Key key = keyRing.verificationKey(header.getKeyId());
+            if (key == null) {
+                throw new UnsupportedJwtException("Неизвестный ключ подписи: " + header.getKeyId());
+            }
+            return key;
+        }
+    }
 }
@@ -0,0 +1,210 @@
+package ru.auth.security;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
+import org.springframework.web.util.UrlPathHelper;
+
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+/**
+ * Авторизация запросов по пути: правила компилируются при старте в префиксное дерево по сегментам пути,
+ * проверка - один проход по сегментам без выделения памяти и проверка бита роли в маске пользователя.
+ * Заменяет цепочку requestMatchers, которая перебирает правила по очереди и сравнивает роли строками.
+ * <p>
+ * Правило задается для точного пути ("/auth/login") или для поддерева ("/api/admin/**", включая сам "/api/admin").
+ * Действует самое точное правило: точный путь, затем самое глубокое поддерево, затем правило по умолчанию.
+ */
+public final class PathAuthorizationManager implements AuthorizationManager<RequestAuthorizationContext> {
+
+    private static final AuthorizationDecision GRANTED = new AuthorizationDecision(true);
+    private static final AuthorizationDecision DENIED = new AuthorizationDecision(false);
+
+    private static final Rule PERMIT_ALL = new Rule(true, 0L);
+    private static final Rule AUTHENTICATED = new Rule(false, 0L);
+
+    private static final UrlPathHelper PATH_HELPER = new UrlPathHelper();
+
+    private final Node root;
+    private final Rule defaultRule;
+
+    private PathAuthorizationManager(Node root, Rule defaultRule) {
+        this.root = root;
+        this.defaultRule = defaultRule;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public AuthorizationDecision check(Supplier<Authentication> authentication, RequestAuthorizationContext context) {
+        Rule rule = find(path(context.getRequest()));
+        if (rule.permitAll) {
+            return GRANTED;
+        }
+        Authentication current = authentication.get();
+        if (current == null || !current.isAuthenticated() || current instanceof AnonymousAuthenticationToken) {
+            return DENIED;
+        }
+        return rule.mask == 0L || (roleMask(current) & rule.mask) != 0L ? GRANTED : DENIED;
+    }
+
+    /**
+     * Маска ролей пользователя: готовая у {@link AuthUserDetails}, для прочих собирается по authority.
+     */
+    static long roleMask(Authentication authentication) {
+        Object principal = authentication.getPrincipal();
+        if (principal instanceof AuthUserDetails) {
+            return ((AuthUserDetails) principal).getRoleMask();
+        }
+        return RoleRegistry.mask(authentication.getAuthorities());
+    }
+
+    /**
+     * Путь внутри приложения. Обычный путь берется из URI как есть; путь с %-кодированием или параметрами
+     * после ';' декодируется так же, как при выборе контроллера, иначе правило можно было бы обойти.
+     */
+    private static String path(HttpServletRequest request) {
+        String uri = request.getRequestURI();
+        if (uri.indexOf('%') >= 0 || uri.indexOf(';') >= 0) {
+            return PATH_HELPER.getPathWithinApplication(request);
+        }
+        int contextLength = request.getContextPath().length();
+        return contextLength == 0 ? uri : uri.substring(contextLength);
+    }
+
+    private Rule find(String path) {
+        Node node = root;
+        Rule rule = root.subtree != null ? root.subtree : defaultRule;
+        int length = path.length();
+        int start = 0;
+        while (start < length) {
+            if (path.charAt(start) == '/') {
+                start++;
+                continue;
+            }
+            int end = path.indexOf('/', start);
+            if (end < 0) {
+                end = length;
+            }
+            node = node.child(path, start, end - start);
+            if (node == null) {
+                return rule;
+            }
+            if (node.subtree != null) {
+                rule = node.subtree;
+            }
+            start = end;
+        }
+        return node.exact != null ? node.exact : rule;
+    }
+
+    /**
+     * Правило: доступно всем, либо маска ролей, хотя бы одна из которых нужна (0 - любой аутентифицированный).
+     */
+    private static final class Rule {
+        private final boolean permitAll;
+        private final long mask;
+
+        private Rule(boolean permitAll, long mask) {
+            this.permitAll = permitAll;
+            this.mask = mask;
+        }
+    }
+
+    private static final class Node {
+        private String[] segments = new String[0];
+        private Node[] children = new Node[0];
+        private Rule exact;
+        private Rule subtree;
+
+        Node child(String path, int offset, int length) {
+            for (int i = 0; i < segments.length; i++) {
+                String segment = segments[i];
+                if (segment.length() == length && path.regionMatches(offset, segment, 0, length)) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        Node getOrCreate(String segment) {
+            Node child = child(segment, 0, segment.length());
+            if (child == null) {
+                child = new Node();
+                segments = Arrays.copyOf(segments, segments.length + 1);
+                children = Arrays.copyOf(children, children.length + 1);
+                segments[segments.length - 1] = segment;
+                children[children.length - 1] = child;
+            }
+            return child;
+        }
+    }
+
+    /**
+     * Сборка правил. Повторное правило для того же пути - ошибка конфигурации.
+     */
+    public static final class Builder {
+
+        private final Node root = new Node();
+        /** Пути, не попавшие ни под одно правило, доступны любому аутентифицированному пользователю. */
+        private final Rule defaultRule = AUTHENTICATED;
+
+        private Builder() {
+        }
+
+        public Builder permitAll(String... patterns) {
+            for (String pattern : patterns) {
+                add(pattern, PERMIT_ALL);
+            }
+            return this;
+        }
+
+        public Builder authenticated(String... patterns) {
+            for (String pattern : patterns) {
+                add(pattern, AUTHENTICATED);
+            }
+            return this;
+        }
+
+        /**
+         * @param pattern Путь или поддерево вида "/api/admin/**".
+         * @param roleNames Роли без префикса ROLE_, достаточно любой из них.
+         */
+        public Builder hasAnyRole(String pattern, String... roleNames) {
+            add(pattern, new Rule(false, RoleRegistry.requiredMask(roleNames)));
+            return this;
+        }
+
+        private void add(String pattern, Rule rule) {
+            boolean subtree = pattern.endsWith("/**");
+            String path = subtree ? pattern.substring(0, pattern.length() - 3) : pattern;
+            if (path.contains("*")) {
+                throw new IllegalArgumentException("Поддерживаются только точные пути и поддеревья /**: " + pattern);
+            }
+            Node node = root;
+            for (String segment : path.split("/")) {
+                if (!segment.isEmpty()) {
+                    node = node.getOrCreate(segment);
+                }
+            }
+            if ((subtree ? node.subtree : node.exact) != null) {
+                throw new IllegalStateException("Правило для " + pattern + " уже задано");
+            }
+            if (subtree) {
+                node.subtree = rule;
+            } else {
+                node.exact = rule;
+            }
+        }
+
+        public PathAuthorizationManager build() {
+            return new PathAuthorizationManager(root, defaultRule);
+        }
+    }
+}
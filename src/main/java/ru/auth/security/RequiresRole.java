@@ -0,0 +1,23 @@
+package ru.auth.security;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Требует у пользователя хотя бы одну из ролей. Замена {@code @PreAuthorize("hasAnyRole(...)")} без SpEL:
+ * маска ролей вычисляется один раз на метод, проверка - сравнение битов (см. {@link RoleMethodAuthorizationManager}).
+ * Аннотация на методе перекрывает аннотацию на классе.
+ */
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface RequiresRole {
+
+    /**
+     * @return Имена ролей без префикса ROLE_.
+     */
+    String[] value();
+}
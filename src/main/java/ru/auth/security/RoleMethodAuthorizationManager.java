@@ -0,0 +1,56 @@
+package ru.auth.security;
+
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
+import org.springframework.security.core.Authentication;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Проверка {@link RequiresRole} перед вызовом метода. Аннотация разбирается и переводится в маску
+ * {@link RoleRegistry} при первом вызове метода, дальше маска берется из кэша.
+ */
+public class RoleMethodAuthorizationManager implements AuthorizationManager<MethodInvocation> {
+
+    private static final AuthorizationDecision GRANTED = new AuthorizationDecision(true);
+    private static final AuthorizationDecision DENIED = new AuthorizationDecision(false);
+
+    private final Map<Method, Long> requiredMasks = new ConcurrentHashMap<>();
+
+    @Override
+    public AuthorizationDecision check(Supplier<Authentication> authentication, MethodInvocation invocation) {
+        Class<?> targetClass = invocation.getThis() != null
+                ? AopUtils.getTargetClass(invocation.getThis()) : invocation.getMethod().getDeclaringClass();
+        Long required = requiredMasks.computeIfAbsent(invocation.getMethod(), method -> requiredMask(method, targetClass));
+        if (required == 0L) {
+            return GRANTED;
+        }
+        Authentication current = authentication.get();
+        if (current == null || !current.isAuthenticated() || current instanceof AnonymousAuthenticationToken) {
+            return DENIED;
+        }
+        return (PathAuthorizationManager.roleMask(current) & required) != 0L ? GRANTED : DENIED;
+    }
+
+    private static long requiredMask(Method method, Class<?> targetClass) {
+        Method specific = AopUtils.getMostSpecificMethod(method, targetClass);
+        RequiresRole annotation = AnnotatedElementUtils.findMergedAnnotation(specific, RequiresRole.class);
+        if (annotation == null) {
+            annotation = AnnotatedElementUtils.findMergedAnnotation(targetClass, RequiresRole.class);
+        }
+        if (annotation == null) {
+            return 0L;
+        }
+        if (annotation.value().length == 0) {
+            throw new IllegalStateException("@RequiresRole без ролей на " + specific);
+        }
+        return RoleRegistry.requiredMask(annotation.value());
+    }
+}
@@ -0,0 +1,137 @@
+package ru.auth.security;
+
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Реестр ролей: каждая роль существует в единственном экземпляре {@link RoleAuthority} и получает свой бит.
+ * Права пользователя сворачиваются в маску long, и проверка роли при авторизации сводится к проверке бита
+ * вместо сравнения строк. Ролей с битом не больше 64; следующие роли работают как обычные authority,
+ * но не могут использоваться в правилах {@link PathAuthorizationManager} и {@link RequiresRole}.
+ */
+public final class RoleRegistry {
+
+    /** Префикс, с которым роли хранятся в GrantedAuthority. */
+    public static final String ROLE_PREFIX = "ROLE_";
+
+    private static final int MAX_BITS = Long.SIZE;
+
+    private static final Map<String, RoleAuthority> ROLES = new ConcurrentHashMap<>();
+
+    private static int nextBit;
+
+    private RoleRegistry() {
+    }
+
+    /**
+     * Роль как GrantedAuthority с битом в маске прав.
+     */
+    public static final class RoleAuthority implements GrantedAuthority {
+
+        private final String name;
+        private final String authority;
+        private final int bit;
+
+        private RoleAuthority(String name, int bit) {
+            this.name = name;
+            this.authority = ROLE_PREFIX + name;
+            this.bit = bit;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String getAuthority() {
+            return authority;
+        }
+
+        /**
+         * @return Маска с единственным битом роли или 0, если битов на роль не хватило.
+         */
+        public long getMask() {
+            return bit < 0 ? 0L : 1L << bit;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return this == o || o instanceof GrantedAuthority && authority.equals(((GrantedAuthority) o).getAuthority());
+        }
+
+        @Override
+        public int hashCode() {
+            return authority.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return authority;
+        }
+    }
+
+    /**
+     * Возвращает единственный экземпляр роли, регистрируя ее при первом обращении.
+     * @param roleName Имя роли без префикса ROLE_, в любом регистре.
+     * @return Роль.
+     */
+    public static RoleAuthority authority(String roleName) {
+        RoleAuthority role = ROLES.get(roleName);
+        if (role != null) {
+            return role;
+        }
+        return ROLES.computeIfAbsent(roleName.toUpperCase(Locale.ROOT), RoleRegistry::register);
+    }
+
+    private static synchronized RoleAuthority register(String name) {
+        // Вызывается из computeIfAbsent один раз на имя, поэтому биты не пропадают
+        int bit = nextBit < MAX_BITS ? nextBit++ : -1;
+        return new RoleAuthority(name, bit);
+    }
+
+    /**
+     * Маска ролей для произвольного набора authority. Authority не из реестра ищутся по имени,
+     * неизвестные роли и authority без префикса ROLE_ в маску не попадают.
+     * @param authorities Права пользователя.
+     * @return Маска ролей.
+     */
+    public static long mask(Collection<? extends GrantedAuthority> authorities) {
+        long mask = 0L;
+        for (GrantedAuthority authority : authorities) {
+            if (authority instanceof RoleAuthority) {
+                mask |= ((RoleAuthority) authority).getMask();
+                continue;
+            }
+            String name = authority.getAuthority();
+            if (name != null && name.startsWith(ROLE_PREFIX)) {
+                RoleAuthority role = ROLES.get(name.substring(ROLE_PREFIX.length()));
+                if (role != null) {
+                    mask |= role.getMask();
+                }
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Маска для правила авторизации: хотя бы одна из ролей. Роль без бита здесь - ошибка конфигурации.
+     * @param roleNames Имена ролей без префикса ROLE_.
+     * @return Маска ролей.
+     * @throws IllegalStateException если на одну из ролей не хватило бита.
+     */
+    public static long requiredMask(String... roleNames) {
+        long mask = 0L;
+        for (String roleName : roleNames) {
+            RoleAuthority role = authority(roleName);
+            if (role.getMask() == 0L) {
+                throw new IllegalStateException("Для роли " + role.getName() + " не осталось бита в маске прав");
+            }
+            mask |= role.getMask();
+        }
+        return mask;
+    }
+}
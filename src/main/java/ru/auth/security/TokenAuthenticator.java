@@ -0,0 +1,150 @@
+package ru.auth.security;
+
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.security.SignatureException;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Component;
+import ru.auth.config.CachingUserDetailsService;
+import ru.auth.service.RevokedTokenService;
+import ru.auth.service.RoleHierarchyService;
+import ru.auth.service.TokenVersionService;
+
+import java.util.List;
+
+/**
+ * Полная проверка access токена: подпись и срок (через кэш проверенных токенов), отзыв,
+ * затем пользователь из кэша или, в stateless режиме, роли из самого токена с учетом иерархии и версия токенов.
+ * Общая для {@link JwtRequestFilter} и эндпоинта интроспекции, чтобы токен везде принимался одинаково.
+ * Итог каждой проверки считается в {@link AuthMetrics}.
+ */
+@Slf4j
+@Component
+public class TokenAuthenticator {
+
+    /**
+     * Итог проверки. Токен есть у всех итогов, кроме ошибок разбора (EXPIRED, BAD_SIGNATURE, MALFORMED),
+     * пользователь - только у AUTHENTICATED.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Result {
+        private final AuthMetrics.TokenOutcome outcome;
+        private final VerifiedToken token;
+        private final UserDetails userDetails;
+
+        public boolean isAuthenticated() {
+            return outcome == AuthMetrics.TokenOutcome.AUTHENTICATED;
+        }
+    }
+
+    private final CachingUserDetailsService userDetailsService;
+    private final JwtUtil jwtUtil;
+    private final VerifiedTokenCache verifiedTokenCache;
+    private final RevokedTokenService revokedTokenService;
+    private final TokenVersionService tokenVersionService;
+    private final RoleHierarchyService roleHierarchyService;
+    private final AuthMetrics metrics;
+    private final boolean stateless;
+
+    @Autowired
+    public TokenAuthenticator(CachingUserDetailsService userDetailsService, JwtUtil jwtUtil,
+                              VerifiedTokenCache verifiedTokenCache, RevokedTokenService revokedTokenService,
+                              TokenVersionService tokenVersionService, RoleHierarchyService roleHierarchyService,
+                              AuthMetrics metrics,
+                              @Value("${jwt.stateless.enabled:false}") boolean stateless) {
+        this.userDetailsService = userDetailsService;
+        this.jwtUtil = jwtUtil;
+        this.verifiedTokenCache = verifiedTokenCache;
+        this.revokedTokenService = revokedTokenService;
+        this.tokenVersionService = tokenVersionService;
+        this.roleHierarchyService = roleHierarchyService;
+        this.metrics = metrics;
+        this.stateless = stateless;
+    }
+
+    /**
+     * Проверяет токен. Подпись, формат и срок проверяются одним разбором, повторные предъявления
+     * берутся из кэша проверенных токенов.
+     * @param jwt Строка токена без префикса Bearer.
+     * @return Итог проверки.
+     */
+    public Result authenticate(String jwt) {
+        VerifiedToken token;
+        long start = System.nanoTime();
+        try {
+            token = verifiedTokenCache.verify(jwt);
+        } catch (ExpiredJwtException e) {
+            return record(new Result(AuthMetrics.TokenOutcome.EXPIRED, null, null));
+        } catch (SignatureException e) {
+            return record(new Result(AuthMetrics.TokenOutcome.BAD_SIGNATURE, null, null));
+        } catch (JwtException | IllegalArgumentException e) {
+            log.debug("Невалидный токен: {}", e.getMessage());
+            return record(new Result(AuthMetrics.TokenOutcome.MALFORMED, null, null));
+        } finally {
+            metrics.recordVerify(System.nanoTime() - start);
+        }
+
+        if (isRevoked(token)) {
+            return record(new Result(AuthMetrics.TokenOutcome.REVOKED, token, null));
+        }
+        return record(stateless && token.getVersion() != null
+                ? authenticateFromToken(token)
+                : authenticateFromDatabase(token));
+    }
+
+    private Result record(Result result) {
+        metrics.tokenOutcome(result.getOutcome());
+        return result;
+    }
+
+    private boolean isRevoked(VerifiedToken token) {
+        long start = System.nanoTime();
+        boolean revoked = revokedTokenService.isTokenRevoked(token);
+        metrics.recordRevocationCheck(System.nanoTime() - start);
+        return revoked;
+    }
+
+    /**
+     * Stateless режим: права берутся из claims токена, в базу запрос не идет.
+     * Версия токена сверяется с кэшем версий, чтобы смена ролей или пароля отзывала старые токены.
+     */
+    private Result authenticateFromToken(VerifiedToken token) {
+        if (!tokenVersionService.isCurrent(token.getSubject(), token.getVersion())) {
+            return new Result(AuthMetrics.TokenOutcome.STALE, token, null);
+        }
+        // В токене только прямые роли, унаследованные права берутся из текущей иерархии
+        List<GrantedAuthority> authorities = roleHierarchyService.authorities(token.getRoles());
+        return new Result(AuthMetrics.TokenOutcome.AUTHENTICATED, token,
+                new AuthUserDetails(token.getSubject(), "", true, authorities, token.getRoles(), token.getVersion()));
+    }
+
+    /**
+     * Обычный режим: пользователь и его роли загружаются из базы через кэш.
+     */
+    private Result authenticateFromDatabase(VerifiedToken token) {
+        UserDetails userDetails;
+        long start = System.nanoTime();
+        try {
+            userDetails = userDetailsService.loadUserByUsername(token.getSubject());
+        } catch (UsernameNotFoundException e) {
+            // Пользователь удален после выдачи токена
+            return new Result(AuthMetrics.TokenOutcome.UNKNOWN_USER, token, null);
+        } finally {
+            metrics.recordUserLoad(System.nanoTime() - start);
+        }
+
+        // Проверяем, что логин совпадает, пользователь не отключен и токен не истек
+        if (!jwtUtil.validateToken(token, userDetails)) {
+            return new Result(AuthMetrics.TokenOutcome.STALE, token, null);
+        }
+        return new Result(AuthMetrics.TokenOutcome.AUTHENTICATED, token, userDetails);
+    }
+}
@@ -0,0 +1,117 @@
+package ru.auth.security;
+
+import lombok.EqualsAndHashCode;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Компактный идентификатор токена фиксированного размера (128 бит).
+ * Берется из claim jti, если это UUID, иначе из первых 128 бит SHA-256 от строки токена.
+ * Используется вместо полной строки токена как ключ в структурах, живущих долго.
+ */
+@EqualsAndHashCode
+public final class TokenId {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    // Дайджест считается на каждый запрос (кэш проверенных токенов). Экземпляры берутся из общего пула,
+    // а не из ThreadLocal: виртуальный поток живет один запрос, и ThreadLocal создавал бы дайджест каждый раз
+    private static final Queue<MessageDigest> SHA_256 = new ConcurrentLinkedQueue<>();
+
+    private final long high;
+    private final long low;
+
+    public TokenId(long high, long low) {
+        this.high = high;
+        this.low = low;
+    }
+
+    /**
+     * Строит идентификатор для проверенного токена.
+     * @param token Проверенный токен.
+     * @return Идентификатор токена.
+     */
+    public static TokenId of(VerifiedToken token) {
+        String jti = token.getId();
+        if (jti != null && jti.length() == 36) {
+            try {
+                UUID uuid = UUID.fromString(jti);
+                return new TokenId(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+            } catch (IllegalArgumentException e) {
+                // jti не UUID: падаем на дайджест токена
+            }
+        }
+        return digest(token.getToken());
+    }
+
+    /**
+     * Строит идентификатор из SHA-256 строки токена.
+     * @param token Строка токена.
+     * @return Идентификатор токена.
+     */
+    public static TokenId digest(String token) {
+        MessageDigest sha256 = SHA_256.poll();
+        if (sha256 == null) {
+            sha256 = newSha256();
+        }
+        byte[] hash = sha256.digest(token.getBytes(StandardCharsets.US_ASCII));
+        SHA_256.offer(sha256);
+        return new TokenId(toLong(hash, 0), toLong(hash, 8));
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+    }
+
+    /**
+     * Восстанавливает идентификатор из строки, полученной через {@link #toString()}.
+     * @param hex 32 шестнадцатеричных символа.
+     * @return Идентификатор токена.
+     * @throws IllegalArgumentException если строка не в том формате.
+     */
+    public static TokenId fromString(String hex) {
+        if (hex == null || hex.length() != 32) {
+            throw new IllegalArgumentException("Неверный идентификатор токена: " + hex);
+        }
+        return new TokenId(Long.parseUnsignedLong(hex.substring(0, 16), 16),
+                Long.parseUnsignedLong(hex.substring(16), 16));
+    }
+
+    private static long toLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = offset; i < offset + 8; i++) {
+            value = (value << 8) | (bytes[i] & 0xFF);
+        }
+        return value;
+    }
+
+    public long getHigh() {
+        return high;
+    }
+
+    public long getLow() {
+        return low;
+    }
+
+    /**
+     * @return 32 шестнадцатеричных символа.
+     */
+    @Override
+    public String toString() {
+        char[] chars = new char[32];
+        for (int i = 0; i < 16; i++) {
+            chars[i] = HEX[(int) (high >>> (60 - 4 * i)) & 0xF];
+            chars[16 + i] = HEX[(int) (low >>> (60 - 4 * i)) & 0xF];
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,46 @@
+package ru.auth.security;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Результат однократной проверки JWT токена: подпись уже сверена, claims разобраны.
+ * Дальше по цепочке (фильтр, отзыв токена) работают только с этим объектом,
+ * не разбирая токен повторно.
+ */
+@Getter
+@AllArgsConstructor
+public class VerifiedToken {
+
+    /** Исходная строка токена. */
+    private final String token;
+
+    /** Логин пользователя (claim sub). */
+    private final String subject;
+
+    /** Время выпуска токена (claim iat). */
+    private final Date issuedAt;
+
+    /** Время истечения срока действия токена (claim exp). */
+    private final Date expiration;
+
+    /** Идентификатор токена (claim jti), может отсутствовать у старых токенов. */
+    private final String id;
+
+    /** Имена ролей, зашитые в токен. */
+    private final List<String> roles;
+
+    /** Версия токенов пользователя на момент выдачи (claim ver), может отсутствовать. */
+    private final Long version;
+
+    /**
+     * Проверяет, истек ли срок действия токена.
+     * @return true, если срок действия истек.
+     */
+    public boolean isExpired() {
+        return expiration.getTime() < System.currentTimeMillis();
+    }
+}
@@ -0,0 +1,128 @@
+package ru.auth.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Кэш уже проверенных токенов поверх {@link JwtUtil#verify(String)}.
+ * Один и тот же access токен приходит много раз за свою жизнь; повторная проверка подписи
+ * и разбор JSON заменяются поиском по дайджесту строки токена.
+ * Запись живет не дольше срока действия самого токена, ошибки проверки не кэшируются.
+ * При переполнении вытесняются редко используемые записи (Caffeine, W-TinyLFU), без обхода всего кэша.
+ * Проверку на отзыв кэш не заменяет: фильтр выполняет ее для каждого запроса.
+ */
+@Component
+public class VerifiedTokenCache implements MeterBinder {
+
+    private final JwtUtil jwtUtil;
+    private final boolean enabled;
+    private final Cache<TokenId, VerifiedToken> cache;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    @Autowired
+    public VerifiedTokenCache(JwtUtil jwtUtil,
+                              @Value("${jwt.verified-cache.enabled:true}") boolean enabled,
+                              @Value("${jwt.verified-cache.max-size:10000}") int maxSize) {
+        this.jwtUtil = jwtUtil;
+        this.enabled = enabled;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<TokenId, VerifiedToken>() {
+                    @Override
+                    public long expireAfterCreate(TokenId key, VerifiedToken verified, long currentTime) {
+                        long millisLeft = verified.getExpiration().getTime() - System.currentTimeMillis();
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, millisLeft));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(TokenId key, VerifiedToken verified, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, verified, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(TokenId key, VerifiedToken verified, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .evictionListener((key, value, cause) -> evictions.increment())
+                .build();
+    }
+
+    /**
+     * Возвращает проверенный токен из кэша или проверяет его через {@link JwtUtil}.
+     * @param token JWT токен.
+     * @return Проверенный токен.
+     * @throws io.jsonwebtoken.JwtException если подпись не сходится, формат неверный или срок действия истек.
+     * @throws IllegalArgumentException если токен пустой.
+     */
+    public VerifiedToken verify(String token) {
+        if (!enabled || token == null || token.isEmpty()) {
+            return jwtUtil.verify(token);
+        }
+        TokenId key = TokenId.digest(token);
+        VerifiedToken cached = cache.getIfPresent(key);
+        // Сравнение строк исключает ложное попадание при совпадении дайджестов
+        if (cached != null && !cached.isExpired() && cached.getToken().equals(token)) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+        if (cached != null) {
+            cache.asMap().remove(key, cached);
+        }
+        VerifiedToken verified = jwtUtil.verify(token);
+        if (verified.getExpiration() != null) {
+            cache.put(key, verified);
+        }
+        return verified;
+    }
+
+    /**
+     * Убирает токен из кэша, например при отзыве.
+     * @param token Проверенный токен.
+     */
+    public void evict(VerifiedToken token) {
+        if (token != null) {
+            cache.invalidate(TokenId.digest(token.getToken()));
+        }
+    }
+
+    /**
+     * Сбрасывает весь кэш.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("auth.token.cache.requests", hits, LongAdder::sum)
+                .tag("result", "hit").register(registry);
+        FunctionCounter.builder("auth.token.cache.requests", misses, LongAdder::sum)
+                .tag("result", "miss").register(registry);
+        FunctionCounter.builder("auth.token.cache.evictions", evictions, LongAdder::sum).register(registry);
+        Gauge.builder("auth.token.cache.size", cache, Cache::estimatedSize).register(registry);
+    }
+}
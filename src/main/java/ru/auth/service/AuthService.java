@@ -1,64 +1,205 @@
 package ru.auth.service;
 
+import org.hibernate.exception.ConstraintViolationException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.auth.model.Role;
 import ru.auth.model.User;
 import ru.auth.repository.RoleRepository;
 import ru.auth.repository.UserRepository;
 
-import java.util.Optional;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 public class AuthService {
 
+    private static final String GUEST_ROLE = "GUEST";
+
     private final UserRepository userRepository;
     private final RoleRepository roleRepository;
     private final PasswordEncoder passwordEncoder;
+    private final TokenVersionService tokenVersionService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final PasswordHashingService passwordHashingService;
+    private final TransactionTemplate transactionTemplate;
+    private final RefreshTokenService refreshTokenService;
+
+    // Гостевая роль читается один раз: роли не удаляются. Хранится сама роль, а не ссылка getReferenceById:
+    // ответ на регистрацию читает имя роли уже после транзакции, а неинициализированная ссылка там не читается
+    private volatile Role guestRole;
 
     @Autowired
-    public AuthService(UserRepository userRepository, RoleRepository roleRepository, PasswordEncoder passwordEncoder) {
+    public AuthService(UserRepository userRepository, RoleRepository roleRepository, PasswordEncoder passwordEncoder,
+                       TokenVersionService tokenVersionService, ApplicationEventPublisher eventPublisher,
+                       PasswordHashingService passwordHashingService, PlatformTransactionManager transactionManager,
+                       RefreshTokenService refreshTokenService) {
         this.userRepository = userRepository;
         this.roleRepository = roleRepository;
         this.passwordEncoder = passwordEncoder;
+        this.tokenVersionService = tokenVersionService;
+        this.eventPublisher = eventPublisher;
+        this.passwordHashingService = passwordHashingService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.refreshTokenService = refreshTokenService;
     }
 
     /**
-     * Регистрирует пользователя в системе.
+     * Регистрирует пользователя в системе. Пароль хэшируется в пуле {@link PasswordHashingService},
+     * транзакция открывается только на запись и не держит соединение с базой во время BCrypt.
+     * Логин и email приводятся к нижнему регистру. Занятость логина и email заранее не проверяется:
+     * это делают уникальные ограничения в базе, поэтому две одновременные регистрации с одним логином
+     * не могут обе пройти проверку.
      * @param login Логин пользователя.
      * @param password Пароль пользователя.
      * @param email Email пользователя.
-     * @return Созданный User, если регистрация прошла успешно.
-     * @throws IllegalArgumentException если логин или email уже заняты.
+     * @return Future с созданным User. Завершается с UserAlreadyExistsException, если логин или email уже заняты,
+     * с IllegalArgumentException, если логин или email не заданы,
+     * и с RejectedExecutionException, если пул хэширования переполнен.
      */
-    @Transactional
-    public User registerUser(String login, String password, String email) {
-        if (userRepository.findByLogin(login).isPresent()) {
-            throw new IllegalArgumentException("Логин уже занят!");
-        }
-        if (userRepository.findByEmail(email).isPresent()) {
-            throw new IllegalArgumentException("Почта уже занята!");
+    public CompletableFuture<User> registerUser(String login, String password, String email) {
+        String normalizedLogin = User.normalize(login);
+        String normalizedEmail = User.normalize(email);
+        if (normalizedLogin == null || normalizedLogin.isEmpty() || normalizedEmail == null || normalizedEmail.isEmpty()) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Логин и почта обязательны!"));
         }
+        return passwordHashingService.encode(password)
+                .thenApply(passwordHash -> {
+                    try {
+                        return transactionTemplate.execute(status -> createUser(normalizedLogin, passwordHash, normalizedEmail));
+                    } catch (DataIntegrityViolationException e) {
+                        throw alreadyExists(e, normalizedLogin, normalizedEmail);
+                    }
+                });
+    }
 
+    private User createUser(String login, String passwordHash, String email) {
         // Создаем новый объект пользователя
         User newUser = new User();
         newUser.setLogin(login);
-        newUser.setPassword(passwordEncoder.encode(password));
+        newUser.setPassword(passwordHash);
         newUser.setEmail(email);
 
-        // По умолчанию, получает роль гостя
-        Optional<Role> guestRoleOpt = roleRepository.findByName("GUEST");
-        if (guestRoleOpt.isPresent()) {
-            newUser.addRole(guestRoleOpt.get());
+        // По умолчанию, получает роль гостя. Роль из кэша отсоединена от сессии: для связи нужен только ее id,
+        // поэтому напрямую в набор ролей - addRole читал бы Role.users
+        Role guestRole = guestRole();
+        if (guestRole != null) {
+            newUser.getRoles().add(guestRole);
         } else {
             System.err.println("Ошибка: нет гостевой роли!");
         }
 
         // Сохраняем пользователя в базе данных
-        return userRepository.save(newUser);
+        User saved = userRepository.save(newUser);
+        // Сбрасываем закэшированный "пользователь не найден" для этого логина
+        eventPublisher.publishEvent(new UserChangedEvent(saved.getLogin()));
+        return saved;
+    }
+
+    private Role guestRole() {
+        Role role = guestRole;
+        if (role == null) {
+            role = roleRepository.findByName(GUEST_ROLE).orElse(null);
+            guestRole = role;
+        }
+        return role;
+    }
+
+    /**
+     * Переводит нарушение уникального ограничения в понятную ошибку.
+     * Имя ограничения берется из исключения Hibernate, а если драйвер его не сообщил - из текста ошибки.
+     * Подходят и индексы по lower() (uk_users_login_lower). Если имя незнакомое - например, ограничение
+     * с именем от Hibernate в базе, созданной через ddl-auto, - занятость логина и email проверяется запросом.
+     */
+    private UserAlreadyExistsException alreadyExists(DataIntegrityViolationException e, String login, String email) {
+        String constraint = null;
+        for (Throwable cause = e; cause != null && constraint == null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException) {
+                constraint = ((ConstraintViolationException) cause).getConstraintName();
+            }
+        }
+        String details = (constraint != null ? constraint : String.valueOf(e.getMostSpecificCause().getMessage()))
+                .toLowerCase(Locale.ROOT);
+        boolean loginTaken = details.contains(User.LOGIN_CONSTRAINT);
+        boolean emailTaken = !loginTaken && details.contains(User.EMAIL_CONSTRAINT);
+        if (!loginTaken && !emailTaken) {
+            loginTaken = userRepository.findByLogin(login).isPresent();
+            emailTaken = !loginTaken && userRepository.findByEmail(email).isPresent();
+        }
+        if (loginTaken) {
+            return new UserAlreadyExistsException("Логин уже занят!", e);
+        }
+        if (emailTaken) {
+            return new UserAlreadyExistsException("Почта уже занята!", e);
+        }
+        throw e;
     }
 
-    // TODO login
+    /**
+     * Выдает пользователю роль. Ранее выданные токены пользователя становятся недействительными.
+     * @param login Логин пользователя.
+     * @param roleName Имя роли.
+     * @return Обновленный User.
+     * @throws IllegalArgumentException если пользователь или роль не найдены.
+     */
+    @Transactional
+    public User addRole(String login, String roleName) {
+        User user = findUser(login);
+        user.getRoles().add(findRole(roleName));
+        return invalidateTokens(user);
+    }
+
+    /**
+     * Забирает у пользователя роль. Ранее выданные токены пользователя становятся недействительными.
+     * @param login Логин пользователя.
+     * @param roleName Имя роли.
+     * @return Обновленный User.
+     * @throws IllegalArgumentException если пользователь или роль не найдены.
+     */
+    @Transactional
+    public User removeRole(String login, String roleName) {
+        User user = findUser(login);
+        user.getRoles().remove(findRole(roleName));
+        return invalidateTokens(user);
+    }
+
+    /**
+     * Сбрасывает пароль пользователя. Ранее выданные токены пользователя становятся недействительными.
+     * @param login Логин пользователя.
+     * @param newPassword Новый пароль.
+     * @return Обновленный User.
+     * @throws IllegalArgumentException если пользователь не найден.
+     */
+    @Transactional
+    public User resetPassword(String login, String newPassword) {
+        User user = findUser(login);
+        user.setPassword(passwordEncoder.encode(newPassword));
+        // Со старым паролем нельзя оставаться в системе и через refresh токены
+        refreshTokenService.revokeAll(user.getLogin());
+        return invalidateTokens(user);
+    }
+
+    private User findUser(String login) {
+        return userRepository.findByLogin(User.normalize(login))
+                .orElseThrow(() -> new IllegalArgumentException("Пользователь не найден: " + login));
+    }
+
+    private Role findRole(String roleName) {
+        return roleRepository.findByName(roleName)
+                .orElseThrow(() -> new IllegalArgumentException("Роль не найдена: " + roleName));
+    }
+
+    private User invalidateTokens(User user) {
+        long version = user.incrementTokenVersion();
+        User saved = userRepository.save(user);
+        tokenVersionService.versionChanged(saved.getLogin(), version);
+        eventPublisher.publishEvent(new UserChangedEvent(saved.getLogin()));
+        return saved;
+    }
 }
@@ -0,0 +1,97 @@
+package ru.auth.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.auth.security.TokenId;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Отозванные токены в памяти узла. Записи раскладываются по корзинам времени истечения,
+ * и очистка выбрасывает целые корзины, срок которых прошел, так что в памяти живут
+ * только еще действующие токены.
+ */
+@Component
+@ConditionalOnProperty(name = "auth.revocation.store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryRevocationStore implements RevocationStore {
+
+    private final Map<TokenId, Revocation> revokedTokens = new ConcurrentHashMap<>();
+
+    // Номер корзины (время истечения / bucketMs) -> токены, истекающие в этой корзине
+    private final ConcurrentSkipListMap<Long, Set<TokenId>> expirationWheel = new ConcurrentSkipListMap<>();
+
+    private final long bucketMs;
+
+    @Autowired
+    public InMemoryRevocationStore(@Value("${auth.revocation.sweep-interval-ms:60000}") long bucketMs) {
+        this.bucketMs = bucketMs;
+    }
+
+    @Override
+    public void revoke(TokenId id, long expiresAt) {
+        revokedTokens.put(id, new Revocation(expiresAt, System.currentTimeMillis()));
+        expirationWheel.computeIfAbsent(expiresAt / bucketMs, bucket -> ConcurrentHashMap.newKeySet()).add(id);
+    }
+
+    @Override
+    public boolean isRevoked(TokenId id, long now) {
+        Revocation revocation = revokedTokens.get(id);
+        return revocation != null && revocation.expiresAt > now;
+    }
+
+    @Override
+    public List<TokenId> findRevokedSince(long revokedSince, long now) {
+        List<TokenId> result = new ArrayList<>();
+        revokedTokens.forEach((id, revocation) -> {
+            if (revocation.revokedAt >= revokedSince && revocation.expiresAt > now) {
+                result.add(id);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Корзина чистится, когда с ее конца прошел еще один интервал,
+     * чтобы не гоняться с потоками, которые прямо сейчас добавляют в нее токен.
+     */
+    @Override
+    public void purgeExpired(long now) {
+        long lastSweepableBucket = now / bucketMs - 2;
+        Map.Entry<Long, Set<TokenId>> bucket;
+        while ((bucket = expirationWheel.firstEntry()) != null && bucket.getKey() <= lastSweepableBucket) {
+            for (TokenId id : bucket.getValue()) {
+                revokedTokens.remove(id);
+            }
+            expirationWheel.remove(bucket.getKey(), bucket.getValue());
+        }
+    }
+
+    @Override
+    public boolean isShared() {
+        return false;
+    }
+
+    /**
+     * @return Количество отозванных токенов в памяти.
+     */
+    public int size() {
+        return revokedTokens.size();
+    }
+
+    private static final class Revocation {
+        private final long expiresAt;
+        private final long revokedAt;
+
+        private Revocation(long expiresAt, long revokedAt) {
+            this.expiresAt = expiresAt;
+            this.revokedAt = revokedAt;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package ru.auth.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import ru.auth.model.RevokedToken;
+import ru.auth.repository.RevokedTokenRepository;
+import ru.auth.security.TokenId;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Отозванные токены в базе: переживают перезапуск и видны всем репликам.
+ */
+@Component
+@ConditionalOnProperty(name = "auth.revocation.store", havingValue = "jpa")
+public class JpaRevocationStore implements RevocationStore {
+
+    private final RevokedTokenRepository revokedTokenRepository;
+
+    @Autowired
+    public JpaRevocationStore(RevokedTokenRepository revokedTokenRepository) {
+        this.revokedTokenRepository = revokedTokenRepository;
+    }
+
+    @Override
+    @Transactional
+    public void revoke(TokenId id, long expiresAt) {
+        revokedTokenRepository.save(new RevokedToken(id.toString(), Instant.ofEpochMilli(expiresAt), Instant.now()));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public boolean isRevoked(TokenId id, long now) {
+        return revokedTokenRepository.existsByIdAndExpiresAtAfter(id.toString(), Instant.ofEpochMilli(now));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<TokenId> findRevokedSince(long revokedSince, long now) {
+        List<String> ids = revokedTokenRepository.findIdsRevokedSince(
+                Instant.ofEpochMilli(revokedSince), Instant.ofEpochMilli(now));
+        List<TokenId> result = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            result.add(TokenId.fromString(id));
+        }
+        return result;
+    }
+
+    @Override
+    @Transactional
+    public void purgeExpired(long now) {
+        revokedTokenRepository.deleteExpired(Instant.ofEpochMilli(now));
+    }
+
+    @Override
+    public boolean isShared() {
+        return true;
+    }
+}
@@ -0,0 +1,263 @@
+package ru.auth.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.auth.model.User;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Ограничение частоты попыток входа по логину и по IP адресу.
+ * Каждая попытка стоит проверки BCrypt, поэтому лишние попытки отклоняются до обращения к базе и хэширования.
+ * <p>
+ * Счетчик - скользящее окно из двух соседних интервалов: число попыток в прошлом интервале учитывается
+ * с весом оставшейся доли окна. Счетчики разбиты по хэшу ключа на части со своей блокировкой.
+ * Число ключей ограничено auth.throttle.max-keys: новый ключ в заполненной части вытесняет ключ, который дольше
+ * всех не встречался, просматривая не больше EVICTION_SCAN ключей. Счетчик, упершийся в лимит, не вытесняется никогда:
+ * иначе поток новых ключей сбрасывал бы лимит атакуемого логина. Если вытеснить некого, попытка с новым ключом
+ * разрешается без учета (метрика auth.throttle.untracked): отказ превратил бы часть, заполненную заблокированными
+ * ключами, в запрет входа для всех новых логинов и адресов этой части. Такие попытки ограничивает второй лимит.
+ */
+@Service
+public class LoginThrottleService implements MeterBinder {
+
+    /**
+     * Почему попытка отклонена.
+     */
+    public enum Scope {
+        LOGIN,
+        IP
+    }
+
+    /**
+     * Итог проверки лимита: scope == null - попытка разрешена.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Decision {
+        private static final Decision ALLOWED = new Decision(null, 0);
+
+        private final Scope scope;
+        /** Через сколько секунд стоит повторить попытку. */
+        private final long retryAfterSeconds;
+
+        public boolean isAllowed() {
+            return scope == null;
+        }
+    }
+
+    private static final int MAX_STRIPES = 64;
+
+    // Сколько самых давних ключей части просматривается в поисках вытесняемого
+    private static final int EVICTION_SCAN = 16;
+
+    private final boolean enabled;
+    private final long windowMs;
+
+    private final CounterTable logins;
+    private final CounterTable addresses;
+
+    private final LongAdder loginRejections = new LongAdder();
+    private final LongAdder ipRejections = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder untracked = new LongAdder();
+
+    @Autowired
+    public LoginThrottleService(@Value("${auth.throttle.enabled:true}") boolean enabled,
+                                @Value("${auth.throttle.window-ms:60000}") long windowMs,
+                                @Value("${auth.throttle.login.max-attempts:10}") int loginLimit,
+                                @Value("${auth.throttle.ip.max-attempts:100}") int ipLimit,
+                                @Value("${auth.throttle.max-keys:100000}") int maxKeys) {
+        this.enabled = enabled;
+        this.windowMs = windowMs;
+        this.logins = new CounterTable(loginLimit, maxKeys);
+        this.addresses = new CounterTable(ipLimit, maxKeys);
+    }
+
+    /**
+     * Учитывает попытку входа, если она укладывается в оба лимита.
+     * Отклоненная попытка в счетчики не попадает: если отказал лимит по логину, учтенная попытка по IP возвращается.
+     * @param login Логин из запроса.
+     * @param address IP адрес клиента.
+     * @return Решение; при отказе - какой лимит превышен и когда повторить.
+     */
+    public Decision tryAcquire(String login, String address) {
+        if (!enabled) {
+            return Decision.ALLOWED;
+        }
+        long now = System.currentTimeMillis();
+        if (address != null && !addresses.acquire(address, now)) {
+            ipRejections.increment();
+            return new Decision(Scope.IP, retryAfterSeconds(now));
+        }
+        // Логин приводится к тому же виду, что и при поиске пользователя, чтобы "Admin" и "admin" делили лимит
+        String key = login == null ? "" : User.normalize(login);
+        if (!logins.acquire(key, now)) {
+            if (address != null) {
+                addresses.release(address, now);
+            }
+            loginRejections.increment();
+            return new Decision(Scope.LOGIN, retryAfterSeconds(now));
+        }
+        return Decision.ALLOWED;
+    }
+
+    private long retryAfterSeconds(long now) {
+        return Math.max(1, (windowMs - now % windowMs + 999) / 1000);
+    }
+
+    /**
+     * Счетчики одного вида (логины или адреса) с ограниченным числом ключей.
+     */
+    private final class CounterTable {
+
+        private final int limit;
+        private final int stripeCapacity;
+        private final Stripe[] stripes;
+        private final AtomicInteger size = new AtomicInteger();
+
+        private CounterTable(int limit, int maxKeys) {
+            this.limit = limit;
+            // Число частей - степень двойки, не больше maxKeys: в каждой части хотя бы один ключ, всего не больше maxKeys
+            int stripeCount = Integer.highestOneBit(Math.max(1, Math.min(MAX_STRIPES, maxKeys)));
+            this.stripeCapacity = Math.max(1, maxKeys / stripeCount);
+            this.stripes = new Stripe[stripeCount];
+            for (int i = 0; i < stripeCount; i++) {
+                stripes[i] = new Stripe();
+            }
+        }
+
+        boolean acquire(String key, long now) {
+            long window = now / windowMs;
+            double previousWeight = 1.0 - (double) (now % windowMs) / windowMs;
+            Stripe stripe = stripeFor(key);
+            stripe.lock.lock();
+            try {
+                Counter counter = stripe.counters.get(key);
+                if (counter == null) {
+                    if (stripe.counters.size() >= stripeCapacity && !evict(stripe, window, previousWeight)) {
+                        untracked.increment();
+                        return true;
+                    }
+                    counter = new Counter();
+                    stripe.counters.put(key, counter);
+                    size.incrementAndGet();
+                }
+                if (counter.attempts(window, previousWeight) + 1 > limit) {
+                    return false;
+                }
+                counter.count++;
+                return true;
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+
+        /**
+         * Возвращает попытку, учтенную в том же окне, что и now.
+         */
+        void release(String key, long now) {
+            long window = now / windowMs;
+            Stripe stripe = stripeFor(key);
+            stripe.lock.lock();
+            try {
+                Counter counter = stripe.counters.get(key);
+                if (counter != null && counter.window == window && counter.count > 0) {
+                    counter.count--;
+                }
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+
+        /**
+         * Вытесняет из части первый с начала (дольше всех не встречавшийся) ключ, который сейчас не упирается в лимит.
+         * Пропущенные ключи с исчерпанным лимитом переносятся в конец, чтобы следующий поиск не начинался с них.
+         * @return false, если среди просмотренных ключей вытеснить некого.
+         */
+        private boolean evict(Stripe stripe, long window, double previousWeight) {
+            List<String> blocked = new ArrayList<>();
+            boolean evicted = false;
+            Iterator<Map.Entry<String, Counter>> iterator = stripe.counters.entrySet().iterator();
+            for (int scanned = 0; scanned < EVICTION_SCAN && iterator.hasNext(); scanned++) {
+                Map.Entry<String, Counter> entry = iterator.next();
+                if (entry.getValue().attempts(window, previousWeight) + 1 > limit) {
+                    blocked.add(entry.getKey());
+                } else {
+                    iterator.remove();
+                    size.decrementAndGet();
+                    evictions.increment();
+                    evicted = true;
+                    break;
+                }
+            }
+            for (String key : blocked) {
+                // В порядке обращений get переносит ключ в конец
+                stripe.counters.get(key);
+            }
+            return evicted;
+        }
+
+        private Stripe stripeFor(String key) {
+            int hash = key.hashCode();
+            return stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)];
+        }
+
+        int size() {
+            return size.get();
+        }
+    }
+
+    private static final class Stripe {
+        private final ReentrantLock lock = new ReentrantLock();
+        // В порядке обращений: в начале ключи, которые дольше всех не встречались
+        private final LinkedHashMap<String, Counter> counters = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Попытки ключа в текущем и прошлом интервале. Меняется только под блокировкой своей части.
+     */
+    private static final class Counter {
+        private long window;
+        private int count;
+        private int previous;
+
+        /**
+         * Сдвигает счетчик в окно window и возвращает число попыток в скользящем окне.
+         */
+        double attempts(long window, double previousWeight) {
+            if (this.window != window) {
+                previous = this.window == window - 1 ? count : 0;
+                count = 0;
+                this.window = window;
+            }
+            return previous * previousWeight + count;
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("auth.throttle.rejections", loginRejections, LongAdder::sum)
+                .tag("scope", "login").register(registry);
+        FunctionCounter.builder("auth.throttle.rejections", ipRejections, LongAdder::sum)
+                .tag("scope", "ip").register(registry);
+        FunctionCounter.builder("auth.throttle.evictions", evictions, LongAdder::sum).register(registry);
+        FunctionCounter.builder("auth.throttle.untracked", untracked, LongAdder::sum).register(registry);
+        Gauge.builder("auth.throttle.keys", logins, CounterTable::size).tag("scope", "login").register(registry);
+        Gauge.builder("auth.throttle.keys", addresses, CounterTable::size).tag("scope", "ip").register(registry);
+    }
+}
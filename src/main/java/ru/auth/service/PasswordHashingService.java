@@ -0,0 +1,102 @@
+package ru.auth.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Отдельный ограниченный пул для работы с паролями (BCrypt).
+ * Хэширование не занимает потоки Tomcat, а при переполнении очереди задача сразу отклоняется
+ * с {@link RejectedExecutionException}, чтобы вызывающий мог быстро ответить 503.
+ * При spring.threads.virtual.enabled=true задачи выполняются в виртуальных потоках, но их число
+ * по-прежнему ограничено размером пула: BCrypt нагружает процессор, и больше параллельных хэширований,
+ * чем ядер, только растянет каждое. Выигрыш - в обращениях к базе внутри задач (вход, регистрация):
+ * пока задача ждет соединение или ответ базы, несущий поток свободен для запросов Tomcat.
+ */
+@Service
+public class PasswordHashingService {
+
+    private final PasswordEncoder passwordEncoder;
+    private final ThreadPoolExecutor executor;
+
+    private final Timer queueWaitTimer;
+    private final Timer executionTimer;
+    private final Counter rejectedCounter;
+
+    @Autowired
+    public PasswordHashingService(PasswordEncoder passwordEncoder,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${auth.hashing.threads:0}") int threads,
+                                  @Value("${auth.hashing.queue-capacity:100}") int queueCapacity,
+                                  @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.passwordEncoder = passwordEncoder;
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        ThreadFactory threadFactory = virtualThreads
+                ? Thread.ofVirtual().name("password-hashing-", 1).factory()
+                : Thread.ofPlatform().name("password-hashing-", 1).daemon(true).factory();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+
+        this.queueWaitTimer = Timer.builder("auth.hashing.queue.wait").register(meterRegistry);
+        this.executionTimer = Timer.builder("auth.hashing.execution").register(meterRegistry);
+        this.rejectedCounter = Counter.builder("auth.hashing.rejected").register(meterRegistry);
+        Gauge.builder("auth.hashing.active", executor, ThreadPoolExecutor::getActiveCount).register(meterRegistry);
+        Gauge.builder("auth.hashing.queue.size", executor, pool -> pool.getQueue().size()).register(meterRegistry);
+    }
+
+    /**
+     * Хэширует пароль в пуле.
+     * @param rawPassword Пароль в открытом виде.
+     * @return Future с хэшем; завершается с RejectedExecutionException, если пул переполнен.
+     */
+    public CompletableFuture<String> encode(String rawPassword) {
+        return submit(() -> passwordEncoder.encode(rawPassword));
+    }
+
+    /**
+     * Выполняет в пуле задачу, в которой проверяется или хэшируется пароль (например, аутентификацию).
+     * @param task Задача.
+     * @param <T> Тип результата.
+     * @return Future с результатом; завершается с RejectedExecutionException, если пул переполнен.
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        long enqueuedAt = System.nanoTime();
+        try {
+            executor.execute(() -> {
+                long startedAt = System.nanoTime();
+                queueWaitTimer.record(startedAt - enqueuedAt, TimeUnit.NANOSECONDS);
+                try {
+                    result.complete(task.get());
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                } finally {
+                    executionTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejectedCounter.increment();
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
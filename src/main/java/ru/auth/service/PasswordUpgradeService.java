@@ -0,0 +1,66 @@
+package ru.auth.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.auth.repository.UserRepository;
+
+/**
+ * Прозрачное обновление хэшей паролей. После успешного входа хэш, записанный устаревшим
+ * алгоритмом или с меньшей стоимостью, пересчитывается в пуле хэширования уже после ответа клиенту.
+ */
+@Slf4j
+@Service
+public class PasswordUpgradeService {
+
+    private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingService passwordHashingService;
+    private final UserRepository userRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+
+    @Autowired
+    public PasswordUpgradeService(PasswordEncoder passwordEncoder,
+                                  PasswordHashingService passwordHashingService,
+                                  UserRepository userRepository,
+                                  ApplicationEventPublisher eventPublisher,
+                                  PlatformTransactionManager transactionManager) {
+        this.passwordEncoder = passwordEncoder;
+        this.passwordHashingService = passwordHashingService;
+        this.userRepository = userRepository;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Ставит в очередь перехэширование пароля, если текущий хэш устарел.
+     * Если пул хэширования занят, обновление пропускается до следующего входа.
+     * @param user Только что аутентифицированный пользователь с текущим хэшем.
+     * @param rawPassword Пароль, с которым он вошел.
+     */
+    public void upgradeIfNeeded(UserDetails user, String rawPassword) {
+        String currentHash = user.getPassword();
+        if (currentHash == null || !passwordEncoder.upgradeEncoding(currentHash)) {
+            return;
+        }
+        String login = user.getUsername();
+        passwordHashingService.encode(rawPassword)
+                .thenAccept(newHash -> {
+                    Integer updated = transactionTemplate.execute(status ->
+                            // Обновляем, только если за это время пароль никто не сменил
+                            userRepository.updatePasswordHash(login, currentHash, newHash));
+                    if (updated != null && updated > 0) {
+                        eventPublisher.publishEvent(new UserChangedEvent(login));
+                    }
+                })
+                .exceptionally(e -> {
+                    log.debug("Хэш пароля пользователя {} не обновлен: {}", login, e.toString());
+                    return null;
+                });
+    }
+}
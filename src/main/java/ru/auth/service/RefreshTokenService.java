@@ -0,0 +1,122 @@
+package ru.auth.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.auth.model.RefreshToken;
+import ru.auth.repository.RefreshTokenRepository;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Непрозрачные refresh токены с ротацией. В базе хранится только SHA-256 токена.
+ * Каждый обмен выдает новый токен той же цепочки, а старый помечается использованным;
+ * повторное предъявление использованного токена отзывает всю цепочку.
+ * Обмен - один поиск по индексу, без хэширования пароля.
+ */
+@Service
+public class RefreshTokenService {
+
+    private static final int TOKEN_BYTES = 32;
+
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final long expirationMs;
+    private final SecureRandom random = new SecureRandom();
+
+    @Autowired
+    public RefreshTokenService(RefreshTokenRepository refreshTokenRepository,
+                               @Value("${jwt.refresh.expiration.ms:1209600000}") long expirationMs) {
+        this.refreshTokenRepository = refreshTokenRepository;
+        this.expirationMs = expirationMs;
+    }
+
+    /**
+     * Выдает refresh токен новой цепочки (при входе по паролю).
+     * @param login Логин пользователя.
+     * @return Refresh токен в открытом виде.
+     */
+    @Transactional
+    public String issue(String login) {
+        return issue(login, UUID.randomUUID().toString());
+    }
+
+    /**
+     * Обменивает refresh токен на новый.
+     * @param presented Предъявленный refresh токен.
+     * @return Логин владельца и новый refresh токен.
+     * @throws BadCredentialsException если токен неизвестен, истек или уже был использован.
+     */
+    @Transactional(noRollbackFor = BadCredentialsException.class)
+    public Rotation rotate(String presented) {
+        if (presented == null || presented.isEmpty()) {
+            throw new BadCredentialsException("Refresh токен не передан");
+        }
+        RefreshToken token = refreshTokenRepository.findByTokenHash(hash(presented))
+                .orElseThrow(() -> new BadCredentialsException("Неизвестный refresh токен"));
+        Instant now = Instant.now();
+        if (!token.getExpiresAt().isAfter(now)) {
+            throw new BadCredentialsException("Refresh токен истек");
+        }
+        // Условное обновление: из двух параллельных обменов выиграет только один
+        if (token.getUsedAt() != null || refreshTokenRepository.markUsed(token.getId(), now) == 0) {
+            refreshTokenRepository.deleteFamily(token.getFamilyId());
+            throw new BadCredentialsException("Refresh токен использован повторно, цепочка отозвана");
+        }
+        return new Rotation(token.getLogin(), issue(token.getLogin(), token.getFamilyId()));
+    }
+
+    /**
+     * Отзывает все refresh токены пользователя (например, при сбросе пароля).
+     * @param login Логин пользователя.
+     */
+    @Transactional
+    public void revokeAll(String login) {
+        refreshTokenRepository.deleteByLogin(login);
+    }
+
+    @Scheduled(fixedDelayString = "${auth.revocation.sweep-interval-ms:60000}")
+    @Transactional
+    public void purgeExpired() {
+        refreshTokenRepository.deleteExpired(Instant.now());
+    }
+
+    private String issue(String login, String familyId) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        refreshTokenRepository.save(new RefreshToken(hash(token), login, familyId,
+                Instant.now().plusMillis(expirationMs)));
+        return token;
+    }
+
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Rotation {
+        private final String login;
+        private final String refreshToken;
+    }
+}
@@ -0,0 +1,46 @@
+package ru.auth.service;
+
+import ru.auth.security.TokenId;
+
+import java.util.List;
+
+/**
+ * Хранилище отозванных токенов. Реализация выбирается настройкой auth.revocation.store:
+ * memory - в памяти одного узла, jpa - в базе, общей для всех реплик.
+ */
+public interface RevocationStore {
+
+    /**
+     * Сохраняет отзыв токена.
+     * @param id Идентификатор токена.
+     * @param expiresAt Время истечения токена, мс.
+     */
+    void revoke(TokenId id, long expiresAt);
+
+    /**
+     * Проверяет, отозван ли токен.
+     * @param id Идентификатор токена.
+     * @param now Текущее время, мс.
+     * @return true, если токен отозван и еще не истек.
+     */
+    boolean isRevoked(TokenId id, long now);
+
+    /**
+     * Возвращает токены, отозванные начиная с указанного момента и еще не истекшие.
+     * @param revokedSince Нижняя граница времени отзыва, мс.
+     * @param now Текущее время, мс.
+     * @return Идентификаторы токенов.
+     */
+    List<TokenId> findRevokedSince(long revokedSince, long now);
+
+    /**
+     * Удаляет записи об истекших токенах.
+     * @param now Текущее время, мс.
+     */
+    void purgeExpired(long now);
+
+    /**
+     * @return true, если хранилище общее для нескольких узлов и обращение к нему стоит I/O.
+     */
+    boolean isShared();
+}
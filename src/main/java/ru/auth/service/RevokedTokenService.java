@@ -1,48 +1,152 @@
 package ru.auth.service;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import ru.auth.security.TokenId;
+import ru.auth.security.VerifiedToken;
+import ru.auth.security.VerifiedTokenCache;
 
-import java.util.Date;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Список отозванных токенов поверх {@link RevocationStore}.
+ * Для общего хранилища на узле держится фильтр Блума, который постепенно догружается из хранилища:
+ * неотозванный токен (обычный случай) отсекается в памяти, в хранилище идут только срабатывания фильтра.
+ */
 @Service
 public class RevokedTokenService {
-    private final Map<String, Date> revokedTokens = new ConcurrentHashMap<>();
+
+    private final RevocationStore store;
+    private final VerifiedTokenCache verifiedTokenCache;
+    private final long expectedInsertions;
+    private final double falsePositiveRate;
+    private final long refreshOverlapMs;
+
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+
+    private volatile TokenBloomFilter bloomFilter;
+
+    // Нижняя граница времени отзыва для следующей догрузки фильтра
+    private volatile long refreshWatermark;
+
+    @Autowired
+    public RevokedTokenService(RevocationStore store,
+                               VerifiedTokenCache verifiedTokenCache,
+                               @Value("${auth.revocation.bloom.expected-insertions:1000000}") long expectedInsertions,
+                               @Value("${auth.revocation.bloom.false-positive-rate:0.001}") double falsePositiveRate,
+                               @Value("${auth.revocation.bloom.refresh-overlap-ms:5000}") long refreshOverlapMs) {
+        this.store = store;
+        this.verifiedTokenCache = verifiedTokenCache;
+        this.expectedInsertions = expectedInsertions;
+        this.falsePositiveRate = falsePositiveRate;
+        this.refreshOverlapMs = refreshOverlapMs;
+    }
+
+    /**
+     * Строит фильтр после старта. До этого момента все проверки идут прямо в хранилище.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void initFilter() {
+        if (store.isShared()) {
+            rebuildFilter();
+        }
+    }
 
     /**
      * Добавляет токен в список отозванных.
-     * @param token Отозванный токен.
-     * @param expirationDate Дата истечения срока действия этого токена.
+     * @param token Проверенный токен, дата истечения берется из него же.
      */
-    @Transactional
-    public void revokeToken(String token, Date expirationDate) {
-        if (token != null && expirationDate != null) {
-            revokedTokens.put(token, expirationDate);
+    public void revokeToken(VerifiedToken token) {
+        if (token == null || token.getExpiration() == null) {
+            return;
+        }
+        verifiedTokenCache.evict(token);
+        long expiresAt = token.getExpiration().getTime();
+        if (expiresAt <= System.currentTimeMillis()) {
+            // Истекший токен и так не пройдет проверку
+            return;
+        }
+        TokenId id = TokenId.of(token);
+        store.revoke(id, expiresAt);
+        TokenBloomFilter filter = bloomFilter;
+        if (filter != null) {
+            filter.add(id);
         }
     }
 
     /**
      * Проверяет, был ли токен отозван.
-     * @param token Токен для проверки.
-     * @return true, если токен отозван или его срок действия истек.
+     * @param token Проверенный токен.
+     * @return true, если токен отозван и его срок действия еще не истек.
      */
-    @Transactional
-    public boolean isTokenRevoked(String token) {
+    public boolean isTokenRevoked(VerifiedToken token) {
         if (token == null) {
             return true;
         }
-        Date expirationDate = revokedTokens.get(token);
+        TokenId id = TokenId.of(token);
+        TokenBloomFilter filter = bloomFilter;
+        if (filter != null && !filter.mightContain(id)) {
+            return false;
+        }
+        return store.isRevoked(id, System.currentTimeMillis());
+    }
 
-        if (expirationDate != null) {
-            if (expirationDate.before(new Date())) {
-                revokedTokens.remove(token);
-                return false;
-            }
-            return true;
+    /**
+     * Догружает в фильтр токены, отозванные другими узлами.
+     * Окно перекрывается на refresh-overlap-ms, чтобы не потерять отзывы из еще не закоммиченных транзакций.
+     */
+    @Scheduled(fixedDelayString = "${auth.revocation.bloom.refresh-interval-ms:1000}")
+    public void refreshFilter() {
+        TokenBloomFilter filter = bloomFilter;
+        if (filter == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (TokenId id : store.findRevokedSince(refreshWatermark, now)) {
+            filter.add(id);
+        }
+        refreshWatermark = now - refreshOverlapMs;
+    }
+
+    /**
+     * Удаляет истекшие записи из хранилища.
+     */
+    @Scheduled(fixedDelayString = "${auth.revocation.sweep-interval-ms:60000}")
+    public void sweepExpired() {
+        store.purgeExpired(System.currentTimeMillis());
+    }
+
+    /**
+     * Пересобирает фильтр только из действующих отзывов,
+     * иначе фильтр Блума, из которого нельзя удалять, со временем забился бы истекшими токенами.
+     */
+    @Scheduled(fixedDelayString = "${auth.revocation.bloom.rebuild-interval-ms:600000}",
+            initialDelayString = "${auth.revocation.bloom.rebuild-interval-ms:600000}")
+    public void rebuildFilterPeriodically() {
+        if (store.isShared()) {
+            rebuildFilter();
         }
+    }
 
-        return false;
+    private void rebuildFilter() {
+        // Не synchronized: внутри запрос к базе, а монитор закрепил бы виртуальный поток за несущим
+        rebuildLock.lock();
+        try {
+            long now = System.currentTimeMillis();
+            TokenBloomFilter filter = new TokenBloomFilter(expectedInsertions, falsePositiveRate);
+            for (TokenId id : store.findRevokedSince(0, now)) {
+                filter.add(id);
+            }
+            bloomFilter = filter;
+            // Отзывы, попавшие в старый фильтр во время пересборки, догрузятся из хранилища
+            refreshWatermark = now - refreshOverlapMs;
+            refreshFilter();
+        } finally {
+            rebuildLock.unlock();
+        }
     }
 }
@@ -0,0 +1,15 @@
+package ru.auth.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Событие об изменении иерархии ролей или разрешений.
+ * Кэши пользователей сбрасывают записи тех пользователей, у которых есть хотя бы одна из затронутых ролей.
+ */
+@Getter
+@AllArgsConstructor
+public class RoleHierarchyChangedEvent {
+    /** Маска {@link ru.auth.security.RoleRegistry} ролей, чьи итоговые права изменились. */
+    private final long affectedRoleMask;
+}
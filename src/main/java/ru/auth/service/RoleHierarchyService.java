@@ -0,0 +1,406 @@
+package ru.auth.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.auth.model.Role;
+import ru.auth.repository.RoleGrant;
+import ru.auth.repository.RoleRepository;
+import ru.auth.security.RoleRegistry;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+
+/**
+ * Иерархия ролей и разрешения: роль наследует права родительских ролей и имеет собственные разрешения.
+ * <p>
+ * Иерархия целиком держится в памяти. Для каждой роли заранее посчитано замыкание - все роли и разрешения,
+ * которые она дает; итоговые права набора ролей пользователя кэшируются по маске его ролей, поэтому
+ * загрузка пользователя не делает лишних запросов и join'ов, а проверка прав остается проверкой бита.
+ * При изменении пересчитываются только роли, чьи замыкания затронуты, и публикуется
+ * {@link RoleHierarchyChangedEvent}. Изменения с других узлов подхватываются раз в auth.roles.refresh-interval-ms.
+ */
+@Slf4j
+@Service
+public class RoleHierarchyService {
+
+    private static final Pattern PERMISSION = Pattern.compile("[A-Za-z0-9_.:\\-]+");
+
+    /**
+     * Роль с собственными и итоговыми правами, для администрирования.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class RoleInfo {
+        private final String name;
+        private final Set<String> parents;
+        private final Set<String> permissions;
+        private final Set<String> effectiveRoles;
+        private final Set<String> effectivePermissions;
+    }
+
+    private final RoleRepository roleRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ReentrantLock refreshLock = new ReentrantLock();
+    private volatile Snapshot snapshot;
+
+    @Autowired
+    public RoleHierarchyService(RoleRepository roleRepository, ApplicationEventPublisher eventPublisher) {
+        this.roleRepository = roleRepository;
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * Итоговые права набора ролей: сами роли, все унаследованные роли и все их разрешения.
+     * @param roleNames Роли, выданные пользователю напрямую.
+     * @return Неизменяемый список authority; роли - экземпляры {@link RoleRegistry}.
+     */
+    public List<GrantedAuthority> authorities(Collection<String> roleNames) {
+        Snapshot current = snapshot();
+        long key = 0L;
+        boolean cacheable = true;
+        for (String roleName : roleNames) {
+            long mask = RoleRegistry.authority(roleName).getMask();
+            cacheable &= mask != 0L;
+            key |= mask;
+        }
+        if (!cacheable) {
+            return current.resolve(roleNames);
+        }
+        List<GrantedAuthority> cached = current.resolved.get(key);
+        if (cached == null) {
+            cached = current.resolve(roleNames);
+            current.resolved.putIfAbsent(key, cached);
+        }
+        return cached;
+    }
+
+    /**
+     * @return Все роли с собственными и итоговыми правами, по имени.
+     */
+    public List<RoleInfo> roles() {
+        Snapshot current = snapshot();
+        List<RoleInfo> roles = new ArrayList<>();
+        for (String name : new TreeSet<>(current.names)) {
+            Closure closure = current.closures.get(name);
+            roles.add(new RoleInfo(name,
+                    new TreeSet<>(current.parents.getOrDefault(name, Collections.emptySet())),
+                    new TreeSet<>(current.permissions.getOrDefault(name, Collections.emptySet())),
+                    new TreeSet<>(closure.roles),
+                    new TreeSet<>(closure.permissions)));
+        }
+        return roles;
+    }
+
+    /**
+     * Создает роль.
+     * @param roleName Имя роли.
+     * @throws IllegalStateException если роль уже существует.
+     */
+    @Transactional
+    public void createRole(String roleName) {
+        String name = RoleRegistry.authority(roleName).getName();
+        if (roleRepository.findByName(name).isPresent()) {
+            throw new IllegalStateException("Роль уже существует: " + name);
+        }
+        roleRepository.save(new Role(name));
+        refreshAfterCommit();
+    }
+
+    /**
+     * Добавляет роли родителя, права которого она будет наследовать.
+     * @param roleName Имя роли.
+     * @param parentName Имя родительской роли.
+     * @throws IllegalArgumentException если одна из ролей не найдена.
+     * @throws IllegalStateException если связь образует цикл.
+     */
+    @Transactional
+    public void addParent(String roleName, String parentName) {
+        Role role = findRole(roleName);
+        Role parent = findRole(parentName);
+        Closure parentClosure = snapshot().closures.get(RoleRegistry.authority(parent.getName()).getName());
+        if (role.getId().equals(parent.getId())
+                || parentClosure != null && parentClosure.roles.contains(RoleRegistry.authority(role.getName()).getName())) {
+            throw new IllegalStateException("Связь " + role.getName() + " -> " + parent.getName() + " образует цикл");
+        }
+        role.getParents().add(parent);
+        refreshAfterCommit();
+    }
+
+    /**
+     * Убирает у роли родителя.
+     * @throws IllegalArgumentException если одна из ролей не найдена.
+     */
+    @Transactional
+    public void removeParent(String roleName, String parentName) {
+        Role role = findRole(roleName);
+        role.getParents().remove(findRole(parentName));
+        refreshAfterCommit();
+    }
+
+    /**
+     * Выдает роли разрешение.
+     * @param roleName Имя роли.
+     * @param permission Разрешение, например "users:import".
+     * @throws IllegalArgumentException если роль не найдена или имя разрешения недопустимо.
+     */
+    @Transactional
+    public void addPermission(String roleName, String permission) {
+        if (!PERMISSION.matcher(permission).matches() || permission.startsWith(RoleRegistry.ROLE_PREFIX)) {
+            throw new IllegalArgumentException("Недопустимое имя разрешения: " + permission);
+        }
+        findRole(roleName).getPermissions().add(permission);
+        refreshAfterCommit();
+    }
+
+    /**
+     * Забирает у роли разрешение.
+     * @throws IllegalArgumentException если роль не найдена.
+     */
+    @Transactional
+    public void removePermission(String roleName, String permission) {
+        findRole(roleName).getPermissions().remove(permission);
+        refreshAfterCommit();
+    }
+
+    private Role findRole(String roleName) {
+        return roleRepository.findByName(roleName)
+                .or(() -> roleRepository.findByName(RoleRegistry.authority(roleName).getName()))
+                .orElseThrow(() -> new IllegalArgumentException("Роль не найдена: " + roleName));
+    }
+
+    private void refreshAfterCommit() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    refresh();
+                }
+            });
+        } else {
+            refresh();
+        }
+    }
+
+    private Snapshot snapshot() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            refresh();
+            current = snapshot;
+        }
+        return current;
+    }
+
+    /**
+     * Перечитывает иерархию из базы и пересчитывает замыкания ролей, которых коснулись изменения.
+     */
+    @Scheduled(fixedDelayString = "${auth.roles.refresh-interval-ms:30000}",
+            initialDelayString = "${auth.roles.refresh-interval-ms:30000}")
+    public void refresh() {
+        refreshLock.lock();
+        try {
+            Set<String> names = new HashSet<>();
+            for (String name : roleRepository.findAllNames()) {
+                names.add(RoleRegistry.authority(name).getName());
+            }
+            Map<String, Set<String>> parents = group(roleRepository.findParentGrants(), true);
+            Map<String, Set<String>> permissions = group(roleRepository.findPermissionGrants(), false);
+
+            Snapshot previous = snapshot;
+            Snapshot next = previous == null
+                    ? Snapshot.build(names, parents, permissions)
+                    : previous.update(names, parents, permissions);
+            snapshot = next;
+            if (previous != null && next.affectedRoleMask != 0L) {
+                log.info("Иерархия ролей изменилась, пересчитаны роли: {}", next.affectedRoles);
+                eventPublisher.publishEvent(new RoleHierarchyChangedEvent(next.affectedRoleMask));
+            }
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    private static Map<String, Set<String>> group(List<RoleGrant> grants, boolean roles) {
+        Map<String, Set<String>> grouped = new HashMap<>();
+        for (RoleGrant grant : grants) {
+            String value = roles ? RoleRegistry.authority(grant.getValue()).getName() : grant.getValue();
+            grouped.computeIfAbsent(RoleRegistry.authority(grant.getRole()).getName(), k -> new HashSet<>()).add(value);
+        }
+        return grouped;
+    }
+
+    /**
+     * Роли и разрешения, которые дает одна роль, включая ее саму.
+     */
+    private static final class Closure {
+        private final Set<String> roles;
+        private final Set<String> permissions;
+
+        private Closure(Set<String> roles, Set<String> permissions) {
+            this.roles = roles;
+            this.permissions = permissions;
+        }
+    }
+
+    /**
+     * Неизменяемое состояние иерархии. Кэш итоговых прав по маске ролей живет вместе с ним.
+     */
+    private static final class Snapshot {
+        private final Set<String> names;
+        private final Map<String, Set<String>> parents;
+        private final Map<String, Set<String>> permissions;
+        private final Map<String, Closure> closures;
+        private final Map<Long, List<GrantedAuthority>> resolved = new ConcurrentHashMap<>();
+        private final Set<String> affectedRoles;
+        private final long affectedRoleMask;
+
+        private Snapshot(Set<String> names, Map<String, Set<String>> parents, Map<String, Set<String>> permissions,
+                         Map<String, Closure> closures, Set<String> affectedRoles) {
+            this.names = names;
+            this.parents = parents;
+            this.permissions = permissions;
+            this.closures = closures;
+            this.affectedRoles = affectedRoles;
+            long mask = 0L;
+            for (String role : affectedRoles) {
+                long bit = RoleRegistry.authority(role).getMask();
+                // Роль без бита в маске не отличить от других: сбрасываем права всех пользователей
+                mask |= bit != 0L ? bit : -1L;
+            }
+            this.affectedRoleMask = mask;
+        }
+
+        static Snapshot build(Set<String> names, Map<String, Set<String>> parents, Map<String, Set<String>> permissions) {
+            Map<String, Closure> closures = new HashMap<>();
+            for (String name : names) {
+                closure(name, parents, permissions, closures, new HashSet<>());
+            }
+            return new Snapshot(names, parents, permissions, closures, names);
+        }
+
+        /**
+         * Новое состояние: замыкания ролей, которых изменения не коснулись, переиспользуются,
+         * как и закэшированные итоговые права наборов без затронутых ролей.
+         */
+        Snapshot update(Set<String> newNames, Map<String, Set<String>> newParents, Map<String, Set<String>> newPermissions) {
+            Set<String> changed = new HashSet<>();
+            Set<String> all = new HashSet<>(names);
+            all.addAll(newNames);
+            for (String name : all) {
+                if (names.contains(name) != newNames.contains(name)
+                        || !Objects.equals(parents.get(name), newParents.get(name))
+                        || !Objects.equals(permissions.get(name), newPermissions.get(name))) {
+                    changed.add(name);
+                }
+            }
+
+            // Затронуты изменившиеся роли и их потомки - и по старой иерархии, и по новой
+            Set<String> affected = new LinkedHashSet<>(changed);
+            for (Map.Entry<String, Closure> entry : closures.entrySet()) {
+                if (!Collections.disjoint(entry.getValue().roles, changed)) {
+                    affected.add(entry.getKey());
+                }
+            }
+            Map<String, Set<String>> children = new HashMap<>();
+            newParents.forEach((child, roleParents) ->
+                    roleParents.forEach(parent -> children.computeIfAbsent(parent, k -> new HashSet<>()).add(child)));
+            Deque<String> queue = new ArrayDeque<>(changed);
+            while (!queue.isEmpty()) {
+                for (String child : children.getOrDefault(queue.poll(), Collections.emptySet())) {
+                    if (affected.add(child)) {
+                        queue.add(child);
+                    }
+                }
+            }
+
+            Map<String, Closure> newClosures = new HashMap<>();
+            for (String name : newNames) {
+                if (!affected.contains(name) && closures.containsKey(name)) {
+                    newClosures.put(name, closures.get(name));
+                }
+            }
+            for (String name : newNames) {
+                closure(name, newParents, newPermissions, newClosures, new HashSet<>());
+            }
+            Snapshot next = new Snapshot(newNames, newParents, newPermissions, newClosures, affected);
+            resolved.forEach((mask, authorities) -> {
+                if ((mask & next.affectedRoleMask) == 0L) {
+                    next.resolved.put(mask, authorities);
+                }
+            });
+            return next;
+        }
+
+        private static Closure closure(String name, Map<String, Set<String>> parents, Map<String, Set<String>> permissions,
+                                       Map<String, Closure> done, Set<String> visiting) {
+            Closure closure = done.get(name);
+            if (closure != null) {
+                return closure;
+            }
+            Set<String> roles = new HashSet<>();
+            Set<String> granted = new HashSet<>(permissions.getOrDefault(name, Collections.emptySet()));
+            roles.add(name);
+            visiting.add(name);
+            for (String parent : parents.getOrDefault(name, Collections.emptySet())) {
+                // Цикл мог появиться только в обход addParent, например правкой базы; он просто разрывается
+                if (visiting.contains(parent)) {
+                    continue;
+                }
+                Closure inherited = closure(parent, parents, permissions, done, visiting);
+                roles.addAll(inherited.roles);
+                granted.addAll(inherited.permissions);
+            }
+            visiting.remove(name);
+            closure = new Closure(Collections.unmodifiableSet(roles), Collections.unmodifiableSet(granted));
+            done.put(name, closure);
+            return closure;
+        }
+
+        List<GrantedAuthority> resolve(Collection<String> roleNames) {
+            Set<String> roles = new LinkedHashSet<>();
+            Set<String> granted = new LinkedHashSet<>();
+            for (String roleName : roleNames) {
+                String name = RoleRegistry.authority(roleName).getName();
+                Closure closure = closures.get(name);
+                if (closure == null) {
+                    // Роль появилась в базе позже последнего обновления: пока без наследования
+                    roles.add(name);
+                } else {
+                    roles.addAll(closure.roles);
+                    granted.addAll(closure.permissions);
+                }
+            }
+            List<GrantedAuthority> authorities = new ArrayList<>(roles.size() + granted.size());
+            for (String role : roles) {
+                authorities.add(RoleRegistry.authority(role));
+            }
+            for (String permission : granted) {
+                authorities.add(new SimpleGrantedAuthority(permission));
+            }
+            return Collections.unmodifiableList(authorities);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package ru.auth.service;
+
+import ru.auth.security.TokenId;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Фильтр Блума по идентификаторам токенов. Потокобезопасен, добавление без блокировок.
+ * Ответ "нет" точный, ответ "возможно" нужно перепроверить в хранилище.
+ */
+class TokenBloomFilter {
+
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashCount;
+
+    /**
+     * @param expectedInsertions Ожидаемое число элементов.
+     * @param falsePositiveRate Допустимая доля ложных срабатываний.
+     */
+    TokenBloomFilter(long expectedInsertions, double falsePositiveRate) {
+        long n = Math.max(1, expectedInsertions);
+        long m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.min(Integer.MAX_VALUE - 8, (m + 63) / 64);
+        this.bits = new AtomicLongArray(words);
+        this.bitCount = (long) words * 64;
+        this.hashCount = Math.max(1, (int) Math.round((double) m / n * Math.log(2)));
+    }
+
+    void add(TokenId id) {
+        long h1 = mix(id.getLow());
+        long h2 = mix(id.getHigh()) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current = bits.get(word);
+            while ((current & mask) == 0 && !bits.compareAndSet(word, current, current | mask)) {
+                current = bits.get(word);
+            }
+        }
+    }
+
+    boolean mightContain(TokenId id) {
+        long h1 = mix(id.getLow());
+        long h2 = mix(id.getHigh()) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Перемешивание битов (финализатор MurmurHash3): дайджест и так случайный, а jti может быть нет
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
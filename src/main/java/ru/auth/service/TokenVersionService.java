@@ -0,0 +1,98 @@
+package ru.auth.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.auth.repository.UserRepository;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Кэш версий токенов пользователей для stateless режима.
+ * Фильтр сверяет claim ver из токена с текущей версией пользователя; версия берется из памяти
+ * и перечитывается из базы не чаще раза в jwt.stateless.version-cache-ttl-ms.
+ * Изменения, сделанные на этом узле, попадают в кэш сразу после коммита.
+ */
+@Service
+public class TokenVersionService {
+
+    /** Версия для несуществующего пользователя: ни один токен ей не соответствует. */
+    private static final long UNKNOWN_USER = -1L;
+
+    private final UserRepository userRepository;
+    private final long ttlMs;
+    private final int maxEntries;
+    private final Map<String, CachedVersion> versions = new ConcurrentHashMap<>();
+
+    @Autowired
+    public TokenVersionService(UserRepository userRepository,
+                               @Value("${jwt.stateless.version-cache-ttl-ms:30000}") long ttlMs,
+                               @Value("${jwt.stateless.version-cache-size:100000}") int maxEntries) {
+        this.userRepository = userRepository;
+        this.ttlMs = ttlMs;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Проверяет, что токен выдан для актуальной версии пользователя.
+     * @param login Логин пользователя.
+     * @param tokenVersion Версия из токена.
+     * @return true, если версия совпадает с текущей.
+     */
+    public boolean isCurrent(String login, long tokenVersion) {
+        return tokenVersion == currentVersion(login);
+    }
+
+    private long currentVersion(String login) {
+        long now = System.currentTimeMillis();
+        CachedVersion cached = versions.get(login);
+        if (cached != null && cached.expiresAt > now) {
+            return cached.version;
+        }
+        long version = userRepository.findTokenVersionByLogin(login).orElse(UNKNOWN_USER);
+        put(login, version, now);
+        return version;
+    }
+
+    /**
+     * Сообщает о смене версии пользователя. Если вызвано внутри транзакции,
+     * кэш обновляется после коммита, чтобы параллельное чтение не вернуло старое значение.
+     * @param login Логин пользователя.
+     * @param version Новая версия.
+     */
+    public void versionChanged(String login, long version) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    put(login, version, System.currentTimeMillis());
+                }
+            });
+        } else {
+            put(login, version, System.currentTimeMillis());
+        }
+    }
+
+    private void put(String login, long version, long now) {
+        if (versions.size() >= maxEntries) {
+            versions.values().removeIf(entry -> entry.expiresAt <= now);
+            if (versions.size() >= maxEntries) {
+                versions.clear();
+            }
+        }
+        versions.put(login, new CachedVersion(version, now + ttlMs));
+    }
+
+    private static final class CachedVersion {
+        private final long version;
+        private final long expiresAt;
+
+        private CachedVersion(long version, long expiresAt) {
+            this.version = version;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
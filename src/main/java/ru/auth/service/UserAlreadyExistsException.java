@@ -0,0 +1,11 @@
+package ru.auth.service;
+
+/**
+ * Логин или email уже заняты: регистрация нарушила уникальное ограничение в базе.
+ */
+public class UserAlreadyExistsException extends RuntimeException {
+
+    public UserAlreadyExistsException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,14 @@
+package ru.auth.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Событие об изменении пользователя (регистрация, роли, пароль).
+ * По нему кэши, построенные по логину, сбрасывают свою запись после коммита транзакции.
+ */
+@Getter
+@AllArgsConstructor
+public class UserChangedEvent {
+    private final String login;
+}
@@ -0,0 +1,471 @@
+package ru.auth.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.auth.model.User;
+import ru.auth.payload.UserImportRecord;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+
+/**
+ * Массовый импорт пользователей из NDJSON или CSV в обход JPA.
+ * Строки читаются потоком и пишутся пачками по auth.import.batch-size: одна пачка - одна транзакция
+ * и два пакетных INSERT через JDBC (пользователи и их роли). Id берутся блоками из той же последовательности,
+ * что и у JPA ({@link User#ID_SEQUENCE}), поэтому роли привязываются по id без повторного поиска пользователя. Готовые хэши bcrypt/argon2 пишутся как есть,
+ * открытые пароли хэшируются параллельно в отдельном пуле, чтобы не занимать пул входа и регистрации.
+ * Занятые логин или email не прерывают пачку: INSERT ... ON CONFLICT DO NOTHING пропускает строку,
+ * и она попадает в ошибки вместе с ошибками разбора и проверки.
+ */
+@Slf4j
+@Service
+public class UserImportService {
+
+    public enum Format {
+        NDJSON,
+        CSV
+    }
+
+    /**
+     * Получает результаты импорта по мере обработки, чтобы их можно было сразу отдавать клиенту.
+     */
+    public interface Listener {
+
+        void lineFailed(long line, String login, String error);
+
+        /**
+         * Вызывается после записи каждой пачки.
+         */
+        void batchCompleted(Summary progress);
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Summary {
+        private final long imported;
+        private final long failed;
+    }
+
+    private static final String DEFAULT_ROLE = "GUEST";
+
+    private static final String NEXT_ID_BLOCK = "select nextval('" + User.ID_SEQUENCE + "')";
+    private static final String INSERT_USER = "insert into users (id, login, password, email, token_version, enabled) "
+            + "values (?, ?, ?, ?, 0, true) on conflict do nothing";
+    private static final String INSERT_USER_ROLE = "insert into user_roles (user_id, role_id) values (?, ?)";
+
+    private static final int MAX_LENGTH = 255;
+
+    private static final Pattern BCRYPT = Pattern.compile("\\$2[aby]?\\$\\d{2}\\$[./A-Za-z0-9]{53}");
+    private static final Pattern ARGON2 = Pattern.compile(
+            "\\$argon2(id|i|d)\\$v=\\d+\\$m=\\d+,t=\\d+,p=\\d+\\$[A-Za-z0-9+/]+\\$[A-Za-z0-9+/]+");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final PasswordEncoder passwordEncoder;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObjectReader recordReader;
+    private final int batchSize;
+    private final ExecutorService hashingExecutor;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    @Autowired
+    public UserImportService(JdbcTemplate jdbcTemplate,
+                             PlatformTransactionManager transactionManager,
+                             PasswordEncoder passwordEncoder,
+                             ApplicationEventPublisher eventPublisher,
+                             ObjectMapper objectMapper,
+                             @Value("${auth.import.batch-size:1000}") int batchSize,
+                             @Value("${auth.import.hashing-threads:0}") int hashingThreads) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.passwordEncoder = passwordEncoder;
+        this.eventPublisher = eventPublisher;
+        this.recordReader = objectMapper.readerFor(UserImportRecord.class);
+        this.batchSize = batchSize;
+        int threads = hashingThreads > 0 ? hashingThreads : Runtime.getRuntime().availableProcessors();
+        this.hashingExecutor = Executors.newFixedThreadPool(threads,
+                Thread.ofPlatform().name("user-import-", 1).daemon(true).factory());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        hashingExecutor.shutdownNow();
+    }
+
+    /**
+     * Занимает единственный слот импорта: два импорта одновременно только мешали бы друг другу.
+     * Слот освобождает {@link #importUsers}, а если до импорта дело не дошло - {@link #release()}.
+     * @return false, если импорт уже идет.
+     */
+    public boolean tryAcquire() {
+        return running.compareAndSet(false, true);
+    }
+
+    /**
+     * Освобождает слот, занятый через {@link #tryAcquire()}, когда {@link #importUsers} так и не был вызван.
+     */
+    public void release() {
+        running.set(false);
+    }
+
+    /**
+     * Импортирует пользователей. Перед вызовом слот должен быть занят через {@link #tryAcquire()}.
+     * @param input Поток NDJSON (объект на строку) или CSV с заголовком login,email,password,passwordHash,roles
+     *              (роли в CSV разделяются символом |).
+     * @param format Формат входных данных.
+     * @param listener Получатель ошибок по строкам и прогресса.
+     * @return Итог импорта.
+     * @throws IOException если не удалось прочитать входной поток.
+     * @throws IllegalArgumentException если в CSV нет обязательных колонок.
+     */
+    public Summary importUsers(InputStream input, Format format, Listener listener) throws IOException {
+        try {
+            return doImport(new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8)), format, listener);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private Summary doImport(BufferedReader reader, Format format, Listener listener) throws IOException {
+        Map<String, Long> roleIds = loadRoleIds();
+        CsvColumns columns = null;
+        long lineNumber = 0;
+        if (format == Format.CSV) {
+            columns = CsvColumns.parse(reader.readLine());
+            lineNumber++;
+        }
+
+        Progress progress = new Progress();
+        List<Row> batch = new ArrayList<>(batchSize);
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            UserImportRecord record = null;
+            try {
+                record = columns != null ? columns.toRecord(line) : recordReader.readValue(line);
+                batch.add(validate(record, lineNumber, roleIds));
+            } catch (JsonProcessingException e) {
+                progress.failed(listener, lineNumber, null, "Некорректный JSON: " + e.getOriginalMessage());
+            } catch (IllegalArgumentException e) {
+                progress.failed(listener, lineNumber, record != null ? record.getLogin() : null, e.getMessage());
+            }
+            if (batch.size() >= batchSize) {
+                writeBatch(batch, progress, listener);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            writeBatch(batch, progress, listener);
+        }
+        log.info("Импорт пользователей завершен: добавлено {}, ошибок {}", progress.imported, progress.failed);
+        return progress.summary();
+    }
+
+    private Map<String, Long> loadRoleIds() {
+        Map<String, Long> roleIds = new HashMap<>();
+        jdbcTemplate.query("select id, name from roles", rs -> {
+            roleIds.put(rs.getString("name").toUpperCase(Locale.ROOT), rs.getLong("id"));
+        });
+        return roleIds;
+    }
+
+    private Row validate(UserImportRecord record, long lineNumber, Map<String, Long> roleIds) {
+        String login = User.normalize(record.getLogin());
+        String email = User.normalize(record.getEmail());
+        if (login == null || login.isEmpty() || login.length() > MAX_LENGTH) {
+            throw new IllegalArgumentException("Логин пустой или длиннее " + MAX_LENGTH + " символов");
+        }
+        if (email == null || email.length() > MAX_LENGTH || email.indexOf('@') <= 0
+                || email.indexOf('@') == email.length() - 1 || email.chars().anyMatch(Character::isWhitespace)) {
+            throw new IllegalArgumentException("Некорректная почта");
+        }
+
+        boolean hasPassword = record.getPassword() != null && !record.getPassword().isEmpty();
+        boolean hasHash = record.getPasswordHash() != null && !record.getPasswordHash().isEmpty();
+        if (hasPassword == hasHash) {
+            throw new IllegalArgumentException("Нужно указать ровно одно из полей password и passwordHash");
+        }
+        String hash = null;
+        if (hasHash) {
+            hash = storedHash(record.getPasswordHash());
+            if (hash == null) {
+                throw new IllegalArgumentException("Хэш пароля не в формате bcrypt или argon2");
+            }
+        }
+
+        List<String> roleNames = record.getRoles() == null || record.getRoles().isEmpty()
+                ? List.of(DEFAULT_ROLE) : record.getRoles();
+        List<Long> roles = new ArrayList<>(roleNames.size());
+        for (String roleName : roleNames) {
+            Long roleId = roleName == null ? null : roleIds.get(roleName.trim().toUpperCase(Locale.ROOT));
+            if (roleId == null) {
+                throw new IllegalArgumentException("Неизвестная роль: " + roleName);
+            }
+            if (!roles.contains(roleId)) {
+                roles.add(roleId);
+            }
+        }
+        return new Row(lineNumber, login, email, hasPassword ? record.getPassword() : null, hash, roles);
+    }
+
+    /**
+     * Приводит готовый хэш к виду, который понимает DelegatingPasswordEncoder: с префиксом {bcrypt} или {argon2}.
+     * Хэши с устаревшей стоимостью обновятся при первом входе пользователя.
+     * @return Хэш для записи в базу или null, если формат не распознан.
+     */
+    static String storedHash(String hash) {
+        if (hash.startsWith("{bcrypt}")) {
+            return BCRYPT.matcher(hash.substring("{bcrypt}".length())).matches() ? hash : null;
+        }
+        if (hash.startsWith("{argon2}")) {
+            return ARGON2.matcher(hash.substring("{argon2}".length())).matches() ? hash : null;
+        }
+        if (BCRYPT.matcher(hash).matches()) {
+            return "{bcrypt}" + hash;
+        }
+        if (ARGON2.matcher(hash).matches()) {
+            return "{argon2}" + hash;
+        }
+        return null;
+    }
+
+    private void writeBatch(List<Row> batch, Progress progress, Listener listener) {
+        hashPasswords(batch);
+        boolean[] inserted = transactionTemplate.execute(status -> insert(batch));
+
+        List<String> imported = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            Row row = batch.get(i);
+            if (inserted[i]) {
+                imported.add(row.login);
+            } else {
+                progress.failed(listener, row.line, row.login, "Логин или почта уже заняты");
+            }
+        }
+        progress.imported += imported.size();
+        // Сбрасываем закэшированный "пользователь не найден" для новых логинов
+        for (String login : imported) {
+            eventPublisher.publishEvent(new UserChangedEvent(login));
+        }
+        listener.batchCompleted(progress.summary());
+    }
+
+    private void hashPasswords(List<Row> batch) {
+        List<Future<?>> hashing = new ArrayList<>();
+        for (Row row : batch) {
+            if (row.password != null) {
+                hashing.add(hashingExecutor.submit(() -> {
+                    row.hash = passwordEncoder.encode(row.password);
+                    row.password = null;
+                }));
+            }
+        }
+        try {
+            for (Future<?> future : hashing) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            hashing.forEach(future -> future.cancel(true));
+            throw new IllegalStateException("Импорт прерван", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Ошибка хэширования пароля", e.getCause());
+        }
+    }
+
+    private boolean[] insert(List<Row> batch) {
+        allocateIds(batch);
+        int[] counts = jdbcTemplate.batchUpdate(INSERT_USER, batch, batch.size(), (ps, row) -> {
+            ps.setLong(1, row.id);
+            ps.setString(2, row.login);
+            ps.setString(3, row.hash);
+            ps.setString(4, row.email);
+        })[0];
+
+        boolean[] inserted = new boolean[batch.size()];
+        List<Object[]> userRoles = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            if (counts[i] == Statement.SUCCESS_NO_INFO) {
+                // Без числа строк нельзя понять, какие логины заняты и каким строкам привязывать роли
+                throw new IllegalStateException("Драйвер не вернул число вставленных строк; "
+                        + "импорт не поддерживает reWriteBatchedInserts");
+            }
+            inserted[i] = counts[i] > 0;
+            if (inserted[i]) {
+                Row row = batch.get(i);
+                for (Long roleId : row.roles) {
+                    userRoles.add(new Object[]{row.id, roleId});
+                }
+            }
+        }
+        if (!userRoles.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_USER_ROLE, userRoles);
+        }
+        return inserted;
+    }
+
+    /**
+     * Выдает строкам id из последовательности: nextval открывает блок из {@link User#ID_ALLOCATION_SIZE} id,
+     * как у pooled-lo оптимизатора Hibernate, так что id импорта и JPA не пересекаются.
+     * Id строк, которые не вставятся из-за конфликта, просто пропадают.
+     */
+    private void allocateIds(List<Row> batch) {
+        long next = 0;
+        long blockEnd = 0;
+        for (Row row : batch) {
+            if (next == blockEnd) {
+                next = jdbcTemplate.queryForObject(NEXT_ID_BLOCK, Long.class);
+                blockEnd = next + User.ID_ALLOCATION_SIZE;
+            }
+            row.id = next++;
+        }
+    }
+
+    private static final class Row {
+        private final long line;
+        private final String login;
+        private final String email;
+        private final List<Long> roles;
+        private String password;
+        private String hash;
+        private long id;
+
+        private Row(long line, String login, String email, String password, String hash, List<Long> roles) {
+            this.line = line;
+            this.login = login;
+            this.email = email;
+            this.password = password;
+            this.hash = hash;
+            this.roles = roles;
+        }
+    }
+
+    private static final class Progress {
+        private long imported;
+        private long failed;
+
+        private void failed(Listener listener, long line, String login, String error) {
+            failed++;
+            listener.lineFailed(line, login, error);
+        }
+
+        private Summary summary() {
+            return new Summary(imported, failed);
+        }
+    }
+
+    /**
+     * Колонки CSV по заголовку. Значения могут быть в кавычках, кавычка внутри экранируется удвоением.
+     */
+    private static final class CsvColumns {
+        private final int login;
+        private final int email;
+        private final int password;
+        private final int passwordHash;
+        private final int roles;
+
+        private CsvColumns(List<String> header) {
+            this.login = header.indexOf("login");
+            this.email = header.indexOf("email");
+            this.password = header.indexOf("password");
+            this.passwordHash = header.indexOf("passwordhash");
+            this.roles = header.indexOf("roles");
+        }
+
+        static CsvColumns parse(String headerLine) {
+            if (headerLine == null) {
+                throw new IllegalArgumentException("Пустой CSV: нет заголовка");
+            }
+            List<String> header = new ArrayList<>();
+            for (String column : split(headerLine)) {
+                header.add(column.trim().toLowerCase(Locale.ROOT));
+            }
+            CsvColumns columns = new CsvColumns(header);
+            if (columns.login < 0 || columns.email < 0 || (columns.password < 0 && columns.passwordHash < 0)) {
+                throw new IllegalArgumentException("В заголовке CSV нужны колонки login, email и password или passwordHash");
+            }
+            return columns;
+        }
+
+        UserImportRecord toRecord(String line) {
+            List<String> values = split(line);
+            UserImportRecord record = new UserImportRecord();
+            record.setLogin(value(values, login));
+            record.setEmail(value(values, email));
+            record.setPassword(value(values, password));
+            record.setPasswordHash(value(values, passwordHash));
+            String roleList = value(values, roles);
+            if (roleList != null && !roleList.isBlank()) {
+                record.setRoles(Arrays.asList(roleList.split("\\|")));
+            }
+            return record;
+        }
+
+        private static String value(List<String> values, int index) {
+            return index >= 0 && index < values.size() ? values.get(index) : null;
+        }
+
+        private static List<String> split(String line) {
+            List<String> values = new ArrayList<>();
+            StringBuilder value = new StringBuilder();
+            boolean quoted = false;
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (quoted) {
+                    if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        value.append('"');
+                        i++;
+                    } else if (c == '"') {
+                        quoted = false;
+                    } else {
+                        value.append(c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    values.add(value.toString());
+                    value.setLength(0);
+                } else {
+                    value.append(c);
+                }
+            }
+            if (quoted) {
+                throw new IllegalArgumentException("Незакрытая кавычка");
+            }
+            values.add(value.toString());
+            return values;
+        }
+    }
+}
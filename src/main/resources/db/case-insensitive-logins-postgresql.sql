@@ -0,0 +1,7 @@
+-- Уникальность логина и email без учета регистра для схемы, которую ведет ddl-auto=update (профиль prod получает
+-- те же индексы миграцией V3). Выполняется при каждом старте; если индексы уже есть, ничего не делает. Ограничения
+-- uk_users_login и uk_users_email Hibernate создает сам; индексы по lower() защищают и от строк, записанных
+-- в обход приложения. Если индекс не строится из-за строк, совпадающих без учета регистра, один раз выполняется
+-- db/normalize-logins.sql.
+create unique index if not exists uk_users_login_lower on users (lower(login));
+create unique index if not exists uk_users_email_lower on users (lower(email));
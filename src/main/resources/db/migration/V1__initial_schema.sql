@@ -0,0 +1,73 @@
+-- Схема на момент перехода с spring.jpa.hibernate.ddl-auto на миграции (профиль prod).
+-- База, созданная раньше через ddl-auto=update, этой миграцией не трогается: при первом запуске с Flyway
+-- она получает отметку baseline версии 1 (spring.flyway.baseline-on-migrate). До этого на ней должна хотя бы
+-- раз отработать предыдущая версия сервиса, которая дописала схему и перевела id на последовательности.
+-- Файл должен выполняться и на H2 в режиме PostgreSQL: на нем схему проверяет тест против сущностей.
+create sequence users_seq start with 1 increment by 50;
+create sequence roles_seq start with 1 increment by 50;
+create sequence refresh_tokens_seq start with 1 increment by 50;
+
+create table users (
+    id bigint not null,
+    login varchar(255) not null,
+    password varchar(255) not null,
+    email varchar(255) not null,
+    enabled boolean default true not null,
+    token_version bigint default 0 not null,
+    primary key (id),
+    constraint uk_users_login unique (login),
+    constraint uk_users_email unique (email)
+);
+
+create table roles (
+    id bigint not null,
+    name varchar(255) not null,
+    primary key (id),
+    constraint uk_roles_name unique (name)
+);
+
+create table user_roles (
+    user_id bigint not null,
+    role_id bigint not null,
+    primary key (role_id, user_id),
+    constraint fk_user_roles_user foreign key (user_id) references users,
+    constraint fk_user_roles_role foreign key (role_id) references roles
+);
+
+create table role_parents (
+    role_id bigint not null,
+    parent_id bigint not null,
+    primary key (parent_id, role_id),
+    constraint fk_role_parents_role foreign key (role_id) references roles,
+    constraint fk_role_parents_parent foreign key (parent_id) references roles
+);
+
+create table role_permissions (
+    role_id bigint not null,
+    permission varchar(255) not null,
+    primary key (role_id, permission),
+    constraint fk_role_permissions_role foreign key (role_id) references roles
+);
+
+create table refresh_tokens (
+    id bigint not null,
+    token_hash varchar(64) not null,
+    login varchar(255) not null,
+    family_id varchar(36) not null,
+    expires_at timestamp(6) with time zone not null,
+    used_at timestamp(6) with time zone,
+    primary key (id),
+    constraint idx_refresh_tokens_token_hash unique (token_hash)
+);
+create index idx_refresh_tokens_family_id on refresh_tokens (family_id);
+create index idx_refresh_tokens_login on refresh_tokens (login);
+create index idx_refresh_tokens_expires_at on refresh_tokens (expires_at);
+
+create table revoked_tokens (
+    id varchar(32) not null,
+    expires_at timestamp(6) with time zone not null,
+    revoked_at timestamp(6) with time zone not null,
+    primary key (id)
+);
+create index idx_revoked_tokens_expires_at on revoked_tokens (expires_at);
+create index idx_revoked_tokens_revoked_at on revoked_tokens (revoked_at);
@@ -0,0 +1,11 @@
+-- Ключи подписи RS256/ES256, общие для всех реплик (см. ru.auth.security.JwtKeyRing).
+-- if not exists: база, которую перед переходом на prod вел ddl-auto=update, уже получила эту таблицу от Hibernate.
+create table if not exists jwt_signing_keys (
+    kid varchar(36) not null,
+    algorithm varchar(10) not null,
+    public_key varchar(4096) not null,
+    private_key varchar(4096) not null,
+    created_at timestamp(6) with time zone not null,
+    retired_at timestamp(6) with time zone,
+    primary key (kid)
+);
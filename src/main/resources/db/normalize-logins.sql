@@ -0,0 +1,30 @@
+-- Приведение логинов и email, записанных до нормализации в приложении, к виду User.normalize: без пробелов
+-- по краям и в нижнем регистре. Иначе такой пользователь не может войти: логин ищется уже нормализованным.
+-- Если несколько строк совпадают без учета регистра, значение получает одна: уже нормализованная, а если такой нет -
+-- самая старая (меньший id). К значению остальных дописывается '#id': учетная запись остается, но войти в нее
+-- можно только после переименования администратором. Старые токены всех совпавших учетных записей отзываются
+-- увеличением версии, а refresh токены с ненормализованным логином удаляются: после переименования они указывали бы
+-- на чужую учетную запись.
+-- Выполняется повторно без изменений, на PostgreSQL и на H2. Запускается миграцией V3, а не при каждом старте:
+-- поиск совпадений сравнивает строки попарно. В профиле по умолчанию база, записанная до нормализации,
+-- обрабатывается этим скриптом один раз вручную.
+update users set token_version = token_version + 1
+where exists (select 1 from users o
+              where o.id <> users.id
+                and (lower(trim(o.login)) = lower(trim(users.login)) or lower(trim(o.email)) = lower(trim(users.email))));
+
+delete from refresh_tokens where login <> lower(trim(login));
+
+update users set login = lower(trim(login)) || '#' || id
+where exists (select 1 from users o
+              where lower(trim(o.login)) = lower(trim(users.login)) and o.id <> users.id
+                and (o.login = lower(trim(o.login)) and users.login <> lower(trim(users.login))
+                     or (o.login = lower(trim(o.login))) = (users.login = lower(trim(users.login))) and o.id < users.id));
+update users set login = lower(trim(login)) where login <> lower(trim(login));
+
+update users set email = lower(trim(email)) || '#' || id
+where exists (select 1 from users o
+              where lower(trim(o.email)) = lower(trim(users.email)) and o.id <> users.id
+                and (o.email = lower(trim(o.email)) and users.email <> lower(trim(users.email))
+                     or (o.email = lower(trim(o.email))) = (users.email = lower(trim(users.email))) and o.id < users.id));
+update users set email = lower(trim(email)) where email <> lower(trim(email));
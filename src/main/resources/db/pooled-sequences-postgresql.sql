@@ -0,0 +1,20 @@
+-- Переход id таблиц users, roles и refresh_tokens с IDENTITY на последовательности (pooled-lo, шаг 50).
+-- Выполняется при каждом старте после обновления схемы Hibernate и ничего не меняет при повторном запуске.
+-- Последовательность, которой еще не пользовались, сдвигается за уже выданные id. Использованную не трогаем:
+-- ее блоки уже могли достаться работающим узлам. Первый узел после перехода запускать одним, старые узлы
+-- (с IDENTITY) к этому моменту должны быть остановлены.
+select setval('users_seq', (select coalesce(max(id), 0) + 1 from users), false)
+where not (select is_called from users_seq);
+select setval('roles_seq', (select coalesce(max(id), 0) + 1 from roles), false)
+where not (select is_called from roles_seq);
+select setval('refresh_tokens_seq', (select coalesce(max(id), 0) + 1 from refresh_tokens), false)
+where not (select is_called from refresh_tokens_seq);
+
+-- Старые генераторы id (identity или serial) больше не используются: без них вставка без id падает сразу,
+-- а не занимает id из чужого блока
+alter table users alter column id drop identity if exists;
+alter table users alter column id drop default;
+alter table roles alter column id drop identity if exists;
+alter table roles alter column id drop default;
+alter table refresh_tokens alter column id drop identity if exists;
+alter table refresh_tokens alter column id drop default;
@@ -0,0 +1,83 @@
+package ru.auth.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CachingUserDetailsServiceTest {
+
+    private final CustomUserDetailsService delegate = mock(CustomUserDetailsService.class);
+    private final AtomicLong nanos = new AtomicLong();
+    private final CachingUserDetailsService cache = new CachingUserDetailsService(delegate, 100, 60_000, 5_000, nanos::get);
+
+    @Test
+    void concurrentMissesShareOneLoad() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        UserDetails alice = User.withUsername("alice").password("").authorities(Collections.emptyList()).build();
+        when(delegate.loadUserByUsername("alice")).thenAnswer(invocation -> {
+            loading.countDown();
+            release.await();
+            return alice;
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<UserDetails>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> cache.loadUserByUsername("alice")));
+            }
+            assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+            release.countDown();
+            for (Future<UserDetails> result : results) {
+                assertThat(result.get(5, TimeUnit.SECONDS)).isSameAs(alice);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        verify(delegate, times(1)).loadUserByUsername("alice");
+    }
+
+    @Test
+    void unknownLoginIsRememberedForNegativeTtl() {
+        when(delegate.loadUserByUsername(anyString())).thenThrow(new UsernameNotFoundException("нет"));
+
+        assertThatThrownBy(() -> cache.loadUserByUsername("ghost")).isInstanceOf(UsernameNotFoundException.class);
+        assertThatThrownBy(() -> cache.loadUserByUsername("ghost")).isInstanceOf(UsernameNotFoundException.class);
+        verify(delegate, times(1)).loadUserByUsername("ghost");
+
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(5_001));
+        assertThatThrownBy(() -> cache.loadUserByUsername("ghost")).isInstanceOf(UsernameNotFoundException.class);
+        verify(delegate, times(2)).loadUserByUsername("ghost");
+    }
+
+    @Test
+    void databaseErrorIsNotCached() {
+        UserDetails bob = User.withUsername("bob").password("").authorities(Collections.emptyList()).build();
+        when(delegate.loadUserByUsername("bob")).thenThrow(new IllegalStateException("база недоступна")).thenReturn(bob);
+
+        assertThatThrownBy(() -> cache.loadUserByUsername("bob")).isInstanceOf(IllegalStateException.class);
+        assertThat(cache.loadUserByUsername("bob")).isSameAs(bob);
+        assertThat(cache.loadUserByUsername("bob")).isSameAs(bob);
+        verify(delegate, times(2)).loadUserByUsername("bob");
+    }
+}
@@ -0,0 +1,97 @@
+package ru.auth.config;
+
+import org.flywaydb.core.Flyway;
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.model.naming.CamelCaseToUnderscoresNamingStrategy;
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.AvailableSettings;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.orm.jpa.hibernate.SpringImplicitNamingStrategy;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import ru.auth.model.JwtSigningKey;
+import ru.auth.model.RefreshToken;
+import ru.auth.model.RevokedToken;
+import ru.auth.model.Role;
+import ru.auth.model.User;
+
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Миграция V3 на базе, где логины и email записаны до нормализации, а ограничение уникальности
+ * называется так, как его назвал Hibernate при ddl-auto. И переход на миграции базы, которую вел ddl-auto=update.
+ */
+class CaseInsensitiveLoginsMigrationTest {
+
+    private final DriverManagerDataSource dataSource = new DriverManagerDataSource(
+            "jdbc:h2:mem:migration_" + UUID.randomUUID() + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1", "sa", "");
+    private final JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+
+    @Test
+    void normalizesExistingRowsAndRenamesCollisions() {
+        Flyway.configure().dataSource(dataSource).target("2").load().migrate();
+        jdbcTemplate.execute("alter table users drop constraint uk_users_login");
+        jdbcTemplate.execute("alter table users add constraint uk6dotkott2kjsp8vw4d0m25fb7 unique (login)");
+        jdbcTemplate.update("insert into users (id, login, password, email) values "
+                + "(1, 'Alice', 'x', ' Alice@Test.ru'), (2, 'bob', 'x', 'bob@test.ru'), (3, 'BOB', 'x', 'Bob.Other@test.ru'), "
+                + "(4, 'Carol', 'x', 'carol@test.ru'), (5, 'CAROL', 'x', 'CAROL@TEST.RU')");
+        jdbcTemplate.update("insert into refresh_tokens (id, token_hash, login, family_id, expires_at) values "
+                + "(1, 'h1', 'BOB', 'f1', current_timestamp), (2, 'h2', 'bob', 'f2', current_timestamp)");
+
+        Flyway.configure().dataSource(dataSource).load().migrate();
+
+        assertThat(user(1)).containsEntry("login", "alice").containsEntry("email", "alice@test.ru").containsEntry("token_version", 0L);
+        // Уже нормализованная строка сохраняет логин, совпавшая с ней - переименовывается
+        assertThat(user(2)).containsEntry("login", "bob").containsEntry("token_version", 1L);
+        assertThat(user(3)).containsEntry("login", "bob#3").containsEntry("email", "bob.other@test.ru").containsEntry("token_version", 1L);
+        // Нормализованной нет: значения остаются у самой старой строки
+        assertThat(user(4)).containsEntry("login", "carol").containsEntry("email", "carol@test.ru");
+        assertThat(user(5)).containsEntry("login", "carol#5").containsEntry("email", "carol@test.ru#5");
+        assertThat(jdbcTemplate.queryForList("select login from refresh_tokens", String.class)).containsExactly("bob");
+
+        assertThat(jdbcTemplate.queryForList("select constraint_name from information_schema.table_constraints "
+                + "where table_name = 'users' and constraint_type = 'UNIQUE' order by constraint_name", String.class))
+                .containsExactly("uk_users_email_lower", "uk_users_login_lower");
+        assertThatThrownBy(() -> jdbcTemplate.update("insert into users (id, login, password, email) values "
+                + "(6, 'alice', 'x', 'new@test.ru')"))
+                .isInstanceOf(DuplicateKeyException.class)
+                .hasMessageContaining("uk_users_login");
+    }
+
+    private Map<String, Object> user(long id) {
+        return jdbcTemplate.queryForMap("select login, email, token_version from users where id = ?", id);
+    }
+
+    @Test
+    void baselinesSchemaBuiltByDdlAutoAndMigrates() {
+        // Схема, какой ее оставляет профиль по умолчанию (ddl-auto=update), с таблицей jwt_signing_keys
+        StandardServiceRegistry registry = new StandardServiceRegistryBuilder()
+                .applySetting(AvailableSettings.JAKARTA_NON_JTA_DATASOURCE, dataSource)
+                .applySetting(AvailableSettings.HBM2DDL_AUTO, "update")
+                .applySetting(AvailableSettings.PHYSICAL_NAMING_STRATEGY, CamelCaseToUnderscoresNamingStrategy.class.getName())
+                .applySetting(AvailableSettings.IMPLICIT_NAMING_STRATEGY, SpringImplicitNamingStrategy.class.getName())
+                .build();
+        try (SessionFactory ignored = new MetadataSources(registry)
+                .addAnnotatedClasses(User.class, Role.class, RefreshToken.class, RevokedToken.class, JwtSigningKey.class)
+                .buildMetadata().buildSessionFactory()) {
+            jdbcTemplate.update("insert into users (id, login, password, email, enabled, token_version) "
+                    + "values (1, 'Alice', 'x', 'alice@test.ru', true, 0)");
+        } finally {
+            StandardServiceRegistryBuilder.destroy(registry);
+        }
+
+        Flyway.configure().dataSource(dataSource).baselineOnMigrate(true).baselineVersion("1").load().migrate();
+
+        assertThat(jdbcTemplate.queryForObject("select max(version) from flyway_schema_history", String.class))
+                .isEqualTo("3");
+        assertThat(user(1)).containsEntry("login", "alice");
+        assertThat(jdbcTemplate.queryForObject("select count(*) from jwt_signing_keys", Integer.class)).isZero();
+    }
+}
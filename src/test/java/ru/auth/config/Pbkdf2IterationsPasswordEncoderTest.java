@@ -0,0 +1,34 @@
+package ru.auth.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.Pbkdf2PasswordEncoder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class Pbkdf2IterationsPasswordEncoderTest {
+
+    @Test
+    void raisingIterationsMarksOldHashesForUpgrade() {
+        String oldHash = new Pbkdf2IterationsPasswordEncoder(1_000).encode("secret");
+        Pbkdf2IterationsPasswordEncoder encoder = new Pbkdf2IterationsPasswordEncoder(2_000);
+
+        assertThat(oldHash).startsWith("1000$");
+        assertThat(encoder.matches("secret", oldHash)).isTrue();
+        assertThat(encoder.matches("wrong", oldHash)).isFalse();
+        assertThat(encoder.upgradeEncoding(oldHash)).isTrue();
+
+        String newHash = encoder.encode("secret");
+        assertThat(encoder.matches("secret", newHash)).isTrue();
+        assertThat(encoder.upgradeEncoding(newHash)).isFalse();
+    }
+
+    @Test
+    void acceptsHashesWithoutIterationCount() {
+        String legacyHash = new Pbkdf2PasswordEncoder("", 16, 1_000,
+                Pbkdf2PasswordEncoder.SecretKeyFactoryAlgorithm.PBKDF2WithHmacSHA256).encode("secret");
+        Pbkdf2IterationsPasswordEncoder encoder = new Pbkdf2IterationsPasswordEncoder(1_000);
+
+        assertThat(encoder.matches("secret", legacyHash)).isTrue();
+        assertThat(encoder.upgradeEncoding(legacyHash)).isTrue();
+    }
+}
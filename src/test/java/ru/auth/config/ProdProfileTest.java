@@ -0,0 +1,51 @@
+package ru.auth.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Профиль prod на отдельной H2: схема из миграций совпадает с сущностями, начальные данные добавляются
+ * один раз, бины с @Scheduled создаются несмотря на ленивую инициализацию.
+ */
+@SpringBootTest(properties = "spring.jpa.hibernate.ddl-auto=validate")
+@ActiveProfiles("prod")
+class ProdProfileTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private CommandLineRunner initDatabase;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private ConfigurableApplicationContext context;
+
+    @Test
+    void migratesSchemaAndSeedsOnce() throws Exception {
+        assertThat(jdbcTemplate.queryForObject("select max(version) from flyway_schema_history", String.class))
+                .isEqualTo("3");
+
+        initDatabase.run();
+
+        assertThat(jdbcTemplate.queryForList("select name from roles order by name", String.class))
+                .containsExactly("ADMIN", "GUEST", "PREMIUM_USER");
+        assertThat(jdbcTemplate.queryForList("select r.name from users u join user_roles ur on ur.user_id = u.id "
+                + "join roles r on r.id = ur.role_id where u.login = 'admin'", String.class)).containsExactly("ADMIN");
+        String hash = jdbcTemplate.queryForObject("select password from users where login = 'admin'", String.class);
+        assertThat(passwordEncoder.matches("secure_pass", hash)).isTrue();
+
+        assertThat(context.getBeanFactory().containsSingleton("roleHierarchyService")).isTrue();
+        assertThat(context.getBeanFactory().containsSingleton("adminController")).isFalse();
+    }
+}
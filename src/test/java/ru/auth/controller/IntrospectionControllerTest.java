@@ -0,0 +1,100 @@
+package ru.auth.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import ru.auth.security.AuthMetrics;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Интроспекция должна видеть отзыв токена, не разрешать кэшировать неактивный ответ
+ * и не отвечать без ключа, пока открытый доступ не включен явно.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class IntrospectionControllerTest {
+
+    /** Ключ из тестового application.properties. */
+    static final String API_KEY = "test-introspection-key";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void introspectsActiveAndRevokedTokens() throws Exception {
+        String token = login();
+
+        mockMvc.perform(post("/auth/introspect")
+                        .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                        .param("token", token))
+                .andExpect(status().isUnauthorized());
+        MvcResult active = mockMvc.perform(post("/auth/introspect")
+                        .header(IntrospectionController.API_KEY_HEADER, API_KEY)
+                        .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                        .param("token", token))
+                .andExpect(status().isOk())
+                .andReturn();
+        JsonNode body = objectMapper.readTree(active.getResponse().getContentAsString());
+        assertThat(body.get("active").asBoolean()).isTrue();
+        assertThat(body.get("sub").asText()).isEqualTo("admin");
+        assertThat(body.get("roles").toString()).contains("ADMIN");
+        assertThat(active.getResponse().getHeader(HttpHeaders.CACHE_CONTROL)).contains("max-age=");
+
+        mockMvc.perform(post("/auth/revoke").header(HttpHeaders.AUTHORIZATION, "Bearer " + token))
+                .andExpect(status().isOk());
+
+        MvcResult batch = mockMvc.perform(post("/auth/introspect/batch")
+                        .header(IntrospectionController.API_KEY_HEADER, API_KEY)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"tokens\":[\"" + token + "\",\"garbage\"]}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-store"))
+                .andReturn();
+        JsonNode results = objectMapper.readTree(batch.getResponse().getContentAsString()).get("results");
+        assertThat(results).hasSize(2);
+        assertThat(results.get(0).get("active").asBoolean()).isFalse();
+        assertThat(results.get(0).get("revoked").asBoolean()).isTrue();
+        assertThat(results.get(1).get("active").asBoolean()).isFalse();
+        assertThat(results.get(1).has("revoked")).isFalse();
+    }
+
+    @Test
+    void withoutConfiguredKeysRefusesUnlessAnonymousAllowed() {
+        AuthMetrics metrics = new AuthMetrics(new SimpleMeterRegistry());
+        IntrospectionController closed = new IntrospectionController(null, metrics, List.of(), false, 100, 5, 60);
+        assertThat(closed.introspectForm(null, "garbage").getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+        assertThat(closed.introspectForm("any", "garbage").getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+
+        IntrospectionController open = new IntrospectionController(null, metrics, List.of(), true, 100, 5, 60);
+        assertThat(open.introspectForm(null, "").getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    private String login() throws Exception {
+        MvcResult result = mockMvc.perform(post("/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"login\":\"admin\",\"password\":\"secure_pass\"}"))
+                .andReturn();
+        String response = mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(response).get("token").asText();
+    }
+}
@@ -0,0 +1,73 @@
+package ru.auth.controller;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import javax.sql.DataSource;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Пользователь, записанный до нормализации логинов ("Dave"), входит после db/normalize-logins.sql
+ * с логином в любом регистре, а регистрация того же логина в другом регистре получает 409.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class MixedCaseLoginTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.update("delete from user_roles where user_id in (select id from users where login = 'dave')");
+        jdbcTemplate.update("delete from users where login = 'dave'");
+    }
+
+    @Test
+    void legacyMixedCaseUserLogsInAfterNormalization() throws Exception {
+        jdbcTemplate.update("insert into users (id, login, password, email, enabled, token_version) "
+                + "values (nextval('users_seq'), 'Dave', ?, 'Dave@Test.ru', true, 0)", passwordEncoder.encode("pw"));
+        jdbcTemplate.update("insert into user_roles (user_id, role_id) select u.id, r.id from users u, roles r "
+                + "where u.login = 'Dave' and r.name = 'GUEST'");
+
+        new ResourceDatabasePopulator(new ClassPathResource("db/normalize-logins.sql")).execute(dataSource);
+
+        login("Dave");
+        login("dave");
+        MvcResult registered = mockMvc.perform(post("/auth/register")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"login\":\"DAVE\",\"password\":\"pw\",\"email\":\"other@test.ru\"}"))
+                .andReturn();
+        mockMvc.perform(asyncDispatch(registered)).andExpect(status().isConflict());
+    }
+
+    private void login(String login) throws Exception {
+        MvcResult result = mockMvc.perform(post("/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"login\":\"" + login + "\",\"password\":\"pw\"}"))
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk());
+    }
+}
@@ -0,0 +1,63 @@
+package ru.auth.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Сброс пароля отзывает refresh токены пользователя, даже если логин в запросе записан в другом регистре.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class PasswordResetTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void resetWithMixedCaseLoginRevokesRefreshTokens() throws Exception {
+        MvcResult registered = mockMvc.perform(post("/auth/register")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"login\":\"reset_user\",\"password\":\"old_pw\",\"email\":\"reset@test.ru\"}"))
+                .andReturn();
+        mockMvc.perform(asyncDispatch(registered)).andExpect(status().isCreated());
+        String refreshToken = login("reset_user", "old_pw").get("refreshToken").asText();
+        String admin = login("admin", "secure_pass").get("token").asText();
+
+        mockMvc.perform(post("/api/admin/users/Reset_User/password")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + admin)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"password\":\"new_pw\"}"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(post("/auth/refresh")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"refreshToken\":\"" + refreshToken + "\"}"))
+                .andExpect(status().isUnauthorized());
+        login("reset_user", "new_pw");
+    }
+
+    private JsonNode login(String login, String password) throws Exception {
+        MvcResult result = mockMvc.perform(post("/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"login\":\"" + login + "\",\"password\":\"" + password + "\"}"))
+                .andReturn();
+        String response = mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(response);
+    }
+}
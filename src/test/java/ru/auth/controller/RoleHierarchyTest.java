@@ -0,0 +1,81 @@
+package ru.auth.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Изменение иерархии ролей должно сразу менять права уже вошедших пользователей.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class RoleHierarchyTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void inheritedRolesAndPermissionsApplyImmediately() throws Exception {
+        MvcResult registered = mockMvc.perform(post("/auth/register")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"login\":\"hierarchy_user\",\"password\":\"pw\",\"email\":\"hierarchy@test.ru\"}"))
+                .andReturn();
+        mockMvc.perform(asyncDispatch(registered)).andExpect(status().isCreated());
+        String user = login("hierarchy_user", "pw");
+        String admin = login("admin", "secure_pass");
+
+        mockMvc.perform(get("/api/premium/feature").header(HttpHeaders.AUTHORIZATION, "Bearer " + user))
+                .andExpect(status().isForbidden());
+        try {
+            mockMvc.perform(post("/api/admin/roles/GUEST/parents/PREMIUM_USER").header(HttpHeaders.AUTHORIZATION, "Bearer " + admin))
+                    .andExpect(status().isOk());
+            mockMvc.perform(post("/api/admin/roles/PREMIUM_USER/permissions/reports:read").header(HttpHeaders.AUTHORIZATION, "Bearer " + admin))
+                    .andExpect(status().isOk());
+
+            // Тот же токен: пользователь уже в кэше, но его права пересчитаны
+            mockMvc.perform(get("/api/premium/feature").header(HttpHeaders.AUTHORIZATION, "Bearer " + user))
+                    .andExpect(status().isOk());
+            String introspection = mockMvc.perform(post("/auth/introspect")
+                            .header(IntrospectionController.API_KEY_HEADER, IntrospectionControllerTest.API_KEY)
+                            .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                            .param("token", user))
+                    .andReturn().getResponse().getContentAsString();
+            assertThat(objectMapper.readTree(introspection).get("permissions").toString()).contains("reports:read");
+
+            mockMvc.perform(post("/api/admin/roles/PREMIUM_USER/parents/GUEST").header(HttpHeaders.AUTHORIZATION, "Bearer " + admin))
+                    .andExpect(status().isConflict());
+        } finally {
+            mockMvc.perform(delete("/api/admin/roles/GUEST/parents/PREMIUM_USER").header(HttpHeaders.AUTHORIZATION, "Bearer " + admin));
+            mockMvc.perform(delete("/api/admin/roles/PREMIUM_USER/permissions/reports:read").header(HttpHeaders.AUTHORIZATION, "Bearer " + admin));
+        }
+
+        mockMvc.perform(get("/api/premium/feature").header(HttpHeaders.AUTHORIZATION, "Bearer " + user))
+                .andExpect(status().isForbidden());
+    }
+
+    private String login(String login, String password) throws Exception {
+        MvcResult result = mockMvc.perform(post("/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"login\":\"" + login + "\",\"password\":\"" + password + "\"}"))
+                .andReturn();
+        String response = mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(response).get("token").asText();
+    }
+}
@@ -0,0 +1,51 @@
+package ru.auth.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import ru.auth.service.AuthService;
+import ru.auth.service.RoleHierarchyService;
+import ru.auth.service.UserImportService;
+
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Импорт, который так и не запустился, не должен оставлять слот занятым: иначе все следующие импорты получат 409.
+ */
+@SpringBootTest
+class UserImportSlotTest {
+
+    @Autowired
+    private AuthService authService;
+
+    @Autowired
+    private UserImportService importService;
+
+    @Autowired
+    private RoleHierarchyService roleHierarchyService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void releasesSlotWhenExecutorRejectsImport() {
+        TaskExecutorAdapter rejecting = new TaskExecutorAdapter(task -> {
+            throw new RejectedExecutionException("pool is shut down");
+        });
+        AdminController controller = new AdminController(authService, importService, roleHierarchyService,
+                objectMapper, rejecting, 0);
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/admin/users/import");
+        request.setContentType("application/x-ndjson");
+
+        assertThat(controller.importUsers(request).getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+
+        assertThat(importService.tryAcquire()).isTrue();
+        importService.release();
+    }
+}
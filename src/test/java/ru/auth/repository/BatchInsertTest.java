@@ -0,0 +1,134 @@
+package ru.auth.repository;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import ru.auth.model.Role;
+import ru.auth.model.User;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Вставки сущностей уходят в базу JDBC-пакетами: id выдаются последовательностью заранее,
+ * и Hibernate не нужно выполнять каждую вставку отдельно, чтобы узнать id.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class BatchInsertTest {
+
+    private static final int USERS = 120;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    @Autowired
+    private StatementCounter statements;
+
+    @BeforeEach
+    void setUp() {
+        statements.clear();
+    }
+
+    @Test
+    void insertsAreBatched() {
+        Role guest = roleRepository.saveAndFlush(new Role("BATCH_GUEST"));
+        statements.clear();
+
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            User user = new User("batch_user_" + i, "{noop}pw", "batch_user_" + i + "@test.ru");
+            user.getRoles().add(guest);
+            users.add(user);
+        }
+        userRepository.saveAll(users);
+        userRepository.flush();
+
+        // 120 пользователей при пакете 50: три пакета вставок в users и три в user_roles,
+        // id - три обращения к последовательности (по одному на блок из 50)
+        assertThat(statements.batches("insert into users")).containsExactly(50, 50, 20);
+        assertThat(statements.batches("insert into user_roles")).containsExactly(50, 50, 20);
+        assertThat(statements.count("users_seq")).isEqualTo((USERS + User.ID_ALLOCATION_SIZE - 1) / User.ID_ALLOCATION_SIZE);
+        assertThat(statements.count("insert into")).isEqualTo(6);
+    }
+
+    @TestConfiguration
+    static class ProxyConfig {
+
+        // Общий для бина и прокси: пост-процессор создается раньше остальных бинов
+        private static final StatementCounter COUNTER = new StatementCounter();
+
+        @Bean
+        StatementCounter statementCounter() {
+            return COUNTER;
+        }
+
+        @Bean
+        static BeanPostProcessor dataSourceProxy() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    return bean instanceof DataSource dataSource
+                            ? ProxyDataSourceBuilder.create(dataSource).listener(COUNTER).build()
+                            : bean;
+                }
+            };
+        }
+    }
+
+    /**
+     * Запоминает выполненные запросы: текст и размер пакета (0 - запрос без пакета).
+     */
+    static class StatementCounter implements QueryExecutionListener {
+
+        private final List<String> queries = new ArrayList<>();
+        private final List<Integer> batchSizes = new ArrayList<>();
+
+        @Override
+        public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        }
+
+        @Override
+        public synchronized void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+            for (QueryInfo query : queryInfoList) {
+                queries.add(query.getQuery().toLowerCase(Locale.ROOT));
+                batchSizes.add(execInfo.isBatch() ? execInfo.getBatchSize() : 0);
+            }
+        }
+
+        synchronized void clear() {
+            queries.clear();
+            batchSizes.clear();
+        }
+
+        synchronized List<Integer> batches(String prefix) {
+            List<Integer> sizes = new ArrayList<>();
+            for (int i = 0; i < queries.size(); i++) {
+                if (queries.get(i).startsWith(prefix)) {
+                    sizes.add(batchSizes.get(i));
+                }
+            }
+            return sizes;
+        }
+
+        synchronized long count(String fragment) {
+            return queries.stream().filter(query -> query.contains(fragment)).count();
+        }
+    }
+}
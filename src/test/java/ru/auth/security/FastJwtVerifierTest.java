@@ -0,0 +1,63 @@
+package ru.auth.security;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.Jwts;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+
+import javax.crypto.SecretKey;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FastJwtVerifierTest {
+
+    private final JwtKeyRing keyRing = new JwtKeyRing("HS256", "test_secret", 60_000L);
+    private final JwtUtil jwtUtil = new JwtUtil(keyRing, 60_000L);
+
+    private FastJwtVerifier verifierFor(String token) {
+        return new FastJwtVerifier(token.substring(0, token.indexOf('.')), (SecretKey) keyRing.current().getSigningKey());
+    }
+
+    @Test
+    void fastPathMatchesJjwt() {
+        String token = jwtUtil.generateToken(new AuthUserDetails("alice", "", Arrays.asList(
+                new SimpleGrantedAuthority("ROLE_GUEST"), new SimpleGrantedAuthority("ROLE_ADMIN")), 7L));
+        Claims claims = Jwts.parserBuilder().setSigningKey(keyRing.current().getSigningKey()).build()
+                .parseClaimsJws(token).getBody();
+
+        VerifiedToken fast = verifierFor(token).verify(token);
+
+        assertThat(fast).isNotNull();
+        assertThat(fast.getSubject()).isEqualTo(claims.getSubject());
+        assertThat(fast.getId()).isEqualTo(claims.getId());
+        assertThat(fast.getIssuedAt()).isEqualTo(claims.getIssuedAt());
+        assertThat(fast.getExpiration()).isEqualTo(claims.getExpiration());
+        assertThat(fast.getRoles()).isEqualTo(claims.get(JwtUtil.ROLES_CLAIM)).containsExactlyInAnyOrder("GUEST", "ADMIN");
+        assertThat(fast.getVersion()).isEqualTo(7L);
+    }
+
+    @Test
+    void tamperedTokenFallsBackAndIsRejected() {
+        String token = jwtUtil.generateToken(new User("alice", "", Collections.emptyList()));
+        int position = token.length() - 2;
+        String tampered = token.substring(0, position) + (token.charAt(position) == 'A' ? 'B' : 'A')
+                + token.substring(position + 1);
+
+        assertThat(verifierFor(token).verify(tampered)).isNull();
+        assertThatThrownBy(() -> jwtUtil.verify(tampered)).isInstanceOf(JwtException.class);
+    }
+
+    @Test
+    void expiredTokenFallsBackAndIsRejected() {
+        String token = new JwtUtil(keyRing, -1_000L).generateToken(new User("alice", "", Collections.emptyList()));
+
+        assertThat(verifierFor(token).verify(token)).isNull();
+        assertThatThrownBy(() -> jwtUtil.verify(token)).isInstanceOf(ExpiredJwtException.class);
+    }
+}
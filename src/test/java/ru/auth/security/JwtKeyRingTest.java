@@ -0,0 +1,125 @@
+package ru.auth.security;
+
+import io.jsonwebtoken.JwtException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.auth.repository.JwtSigningKeyRepository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Два экземпляра набора на одной базе - две реплики: подписывают одним ключом, меняют его один раз
+ * и проверяют токены друг друга, в том числе подписанные выведенным ключом.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class JwtKeyRingTest {
+
+    private static final long EXPIRATION_MS = 300_000;
+    private static final long ROTATION_MS = 86_400_000;
+    private static final long REFRESH_MS = 60_000;
+
+    @Autowired
+    private JwtSigningKeyRepository repository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final AtomicLong now = new AtomicLong(System.currentTimeMillis());
+
+    @AfterEach
+    void cleanUp() {
+        repository.deleteAll();
+    }
+
+    @Test
+    void replicasShareKeysAndKeepRetiredOnesUntilTokensExpire() {
+        JwtKeyRing first = replica("test_secret");
+        JwtKeyRing second = replica("test_secret");
+        String oldKid = first.current().getKid();
+        assertThat(second.current().getKid()).isEqualTo(oldKid);
+        String oldToken = sign(first);
+
+        now.addAndGet(ROTATION_MS);
+        first.refresh();
+        second.refresh();
+
+        String newKid = first.current().getKid();
+        assertThat(newKid).isNotEqualTo(oldKid);
+        assertThat(second.current().getKid()).isEqualTo(newKid);
+        assertThat(repository.count()).isEqualTo(2);
+        assertThat(new JwtUtil(second, EXPIRATION_MS).verify(oldToken).getSubject()).isEqualTo("alice");
+        assertThat(jwksKids(second)).containsExactlyInAnyOrder(oldKid, newKid);
+
+        now.addAndGet(EXPIRATION_MS + REFRESH_MS + 60_001);
+        second.refresh();
+
+        assertThat(second.verificationKey(oldKid)).isNull();
+        assertThat(jwksKids(second)).containsExactly(newKid);
+    }
+
+    @Test
+    void unknownKidIsReloadedFromDatabase() {
+        JwtKeyRing first = replica("test_secret");
+        JwtKeyRing second = replica("test_secret");
+        first.rotate();
+        String token = sign(first);
+
+        now.addAndGet(1000);
+
+        assertThat(new JwtUtil(second, EXPIRATION_MS).verify(token).getSubject()).isEqualTo("alice");
+        assertThat(second.current().getKid()).isEqualTo(first.current().getKid());
+    }
+
+    @Test
+    void forgedKidDoesNotReloadMoreThanOncePerSecond() {
+        JwtKeyRing first = replica("test_secret");
+        JwtKeyRing second = replica("test_secret");
+        first.rotate();
+
+        // Последнее чтение было только что: незнакомый kid не ведет в базу
+        assertThatThrownBy(() -> new JwtUtil(second, EXPIRATION_MS).verify(sign(first)))
+                .isInstanceOf(JwtException.class);
+    }
+
+    @Test
+    void privateKeyIsUnreadableWithOtherSecret() {
+        replica("test_secret");
+
+        assertThatThrownBy(() -> replica("other_secret")).isInstanceOf(IllegalStateException.class);
+    }
+
+    private JwtKeyRing replica(String secret) {
+        return new JwtKeyRing("ES256", secret, EXPIRATION_MS, ROTATION_MS, REFRESH_MS,
+                repository, transactionManager, now::get);
+    }
+
+    private static String sign(JwtKeyRing keyRing) {
+        return new JwtUtil(keyRing, EXPIRATION_MS).generateToken(
+                new AuthUserDetails("alice", "", Collections.emptyList(), 0L));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String> jwksKids(JwtKeyRing keyRing) {
+        List<String> kids = new ArrayList<>();
+        for (Map<String, Object> jwk : (List<Map<String, Object>>) keyRing.getJwks().get("keys")) {
+            assertThat(jwk).containsEntry("kty", "EC").containsEntry("alg", "ES256").containsKeys("x", "y");
+            kids.add((String) jwk.get("kid"));
+        }
+        return kids;
+    }
+}
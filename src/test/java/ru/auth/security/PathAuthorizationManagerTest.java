@@ -0,0 +1,65 @@
+package ru.auth.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PathAuthorizationManagerTest {
+
+    private final PathAuthorizationManager manager = PathAuthorizationManager.builder()
+            .permitAll("/auth/login", "/error")
+            .hasAnyRole("/api/admin/**", "ADMIN")
+            .hasAnyRole("/api/premium/**", "PREMIUM_USER", "ADMIN")
+            .build();
+
+    private final Authentication admin = user(new AuthUserDetails("admin", "", List.of(RoleRegistry.authority("ADMIN")), 0L));
+    private final Authentication guest = user(new AuthUserDetails("guest", "", List.of(RoleRegistry.authority("GUEST")), 0L));
+    private final Authentication anonymous = new AnonymousAuthenticationToken("key", "anonymousUser",
+            AuthorityUtils.createAuthorityList("ROLE_ANONYMOUS"));
+
+    @Test
+    void appliesMostSpecificRule() {
+        assertThat(granted("/auth/login", anonymous)).isTrue();
+        assertThat(granted("/auth/login/extra", anonymous)).isFalse();
+        assertThat(granted("/api/guest/hello", anonymous)).isFalse();
+        assertThat(granted("/api/guest/hello", guest)).isTrue();
+
+        assertThat(granted("/api/admin", admin)).isTrue();
+        assertThat(granted("/api/admin/users/bob/roles/ADMIN", admin)).isTrue();
+        assertThat(granted("/api/admin/users", guest)).isFalse();
+        assertThat(granted("/api/administrator", guest)).isTrue();
+        assertThat(granted("/api/premium/feature", admin)).isTrue();
+        assertThat(granted("/api/premium/feature", guest)).isFalse();
+    }
+
+    @Test
+    void decodesPathBeforeMatching() {
+        assertThat(granted("/api/%61dmin/users", guest)).isFalse();
+        assertThat(granted("/api/admin;x=1/users", guest)).isFalse();
+    }
+
+    @Test
+    void acceptsAuthoritiesOutsideRegistry() {
+        Authentication plain = new UsernamePasswordAuthenticationToken("admin", null,
+                List.of(new SimpleGrantedAuthority("ROLE_ADMIN")));
+        assertThat(granted("/api/admin/users", plain)).isTrue();
+    }
+
+    private boolean granted(String uri, Authentication authentication) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", uri);
+        return manager.check(() -> authentication, new RequestAuthorizationContext(request)).isGranted();
+    }
+
+    private static Authentication user(AuthUserDetails details) {
+        return new UsernamePasswordAuthenticationToken(details, null, details.getAuthorities());
+    }
+}
@@ -0,0 +1,86 @@
+package ru.auth.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.auth.model.User;
+import ru.auth.repository.UserRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Одновременные регистрации одного логина (в разном регистре): ровно одна успешна,
+ * остальные получают UserAlreadyExistsException, а не ошибку базы.
+ */
+@SpringBootTest(properties = "auth.hashing.threads=4")
+class ConcurrentRegistrationTest {
+
+    private static final int ATTEMPTS = 8;
+
+    @Autowired
+    private AuthService authService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void onlyOneConcurrentRegistrationWins() throws Exception {
+        List<Throwable> failures = register(i -> (i % 2 == 0 ? "Carol" : " carol "), i -> "carol" + i + "@test.ru");
+
+        assertThat(failures).hasSize(ATTEMPTS - 1)
+                .allSatisfy(e -> assertThat(e).isInstanceOf(UserAlreadyExistsException.class)
+                        .hasMessage("Логин уже занят!"));
+        User user = userRepository.findByLogin("carol").orElseThrow();
+        assertThat(user.getRoles()).extracting(role -> role.getName()).containsExactly("GUEST");
+    }
+
+    @Test
+    void emailIsUniqueIgnoringCase() throws Exception {
+        List<Throwable> failures = register(i -> "dave" + i, i -> (i % 2 == 0 ? "Dave@Test.ru" : "dave@test.ru"));
+
+        assertThat(failures).hasSize(ATTEMPTS - 1)
+                .allSatisfy(e -> assertThat(e).isInstanceOf(UserAlreadyExistsException.class)
+                        .hasMessage("Почта уже занята!"));
+    }
+
+    /**
+     * Запускает регистрации одновременно и возвращает ошибки неуспешных.
+     */
+    private List<Throwable> register(IntFunction<String> login,
+                                     IntFunction<String> email) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(ATTEMPTS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<CompletableFuture<User>>> submitted = new ArrayList<>();
+            for (int i = 0; i < ATTEMPTS; i++) {
+                int index = i;
+                submitted.add(executor.submit(() -> {
+                    start.await();
+                    return authService.registerUser(login.apply(index), "pw", email.apply(index));
+                }));
+            }
+            start.countDown();
+            List<Throwable> failures = new ArrayList<>();
+            for (Future<CompletableFuture<User>> future : submitted) {
+                try {
+                    future.get().join();
+                } catch (CompletionException e) {
+                    failures.add(e.getCause());
+                }
+            }
+            return failures;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package ru.auth.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import ru.auth.security.JwtKeyRing;
+import ru.auth.security.JwtUtil;
+import ru.auth.security.TokenId;
+import ru.auth.security.VerifiedToken;
+import ru.auth.security.VerifiedTokenCache;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({JpaRevocationStore.class, RevokedTokenService.class, VerifiedTokenCache.class, JwtUtil.class, JwtKeyRing.class})
+@TestPropertySource(properties = "auth.revocation.store=jpa")
+class JpaRevocationStoreTest {
+
+    @Autowired
+    private JpaRevocationStore store;
+
+    @Autowired
+    private RevokedTokenService revokedTokenService;
+
+    @Test
+    void revokedTokenIsFoundUntilItExpires() {
+        long now = System.currentTimeMillis();
+        TokenId live = new TokenId(1, 2);
+        TokenId expired = new TokenId(3, 4);
+        store.revoke(live, now + 60_000);
+        store.revoke(expired, now - 1);
+
+        assertThat(store.isRevoked(live, now)).isTrue();
+        assertThat(store.isRevoked(expired, now)).isFalse();
+        assertThat(store.isRevoked(new TokenId(5, 6), now)).isFalse();
+        assertThat(store.findRevokedSince(0, now)).containsExactly(live);
+
+        store.purgeExpired(now);
+        assertThat(store.isRevoked(live, now + 120_000)).isFalse();
+        store.purgeExpired(now + 120_000);
+        assertThat(store.findRevokedSince(0, now)).isEmpty();
+    }
+
+    @Test
+    void serviceAnswersFromBloomFilterAndStore() {
+        revokedTokenService.initFilter();
+        VerifiedToken revoked = token();
+        VerifiedToken active = token();
+
+        revokedTokenService.revokeToken(revoked);
+
+        assertThat(revokedTokenService.isTokenRevoked(revoked)).isTrue();
+        assertThat(revokedTokenService.isTokenRevoked(active)).isFalse();
+        assertThat(store.isRevoked(TokenId.of(revoked), System.currentTimeMillis())).isTrue();
+    }
+
+    private static VerifiedToken token() {
+        Date now = new Date();
+        return new VerifiedToken("token", "user", now, new Date(now.getTime() + 60_000),
+                UUID.randomUUID().toString(), Collections.emptyList(), 0L);
+    }
+}
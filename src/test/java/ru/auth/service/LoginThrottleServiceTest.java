@@ -0,0 +1,123 @@
+package ru.auth.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LoginThrottleServiceTest {
+
+    @Test
+    void limitsAttemptsPerLoginAndPerAddress() {
+        LoginThrottleService throttle = new LoginThrottleService(true, 3_600_000L, 3, 5, 1000);
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(throttle.tryAcquire("Alice", "10.0.0.1").isAllowed()).isTrue();
+        }
+        // Регистр логина не дает обойти лимит
+        LoginThrottleService.Decision rejected = throttle.tryAcquire("alice", "10.0.0.2");
+        assertThat(rejected.isAllowed()).isFalse();
+        assertThat(rejected.getScope()).isEqualTo(LoginThrottleService.Scope.LOGIN);
+        assertThat(rejected.getRetryAfterSeconds()).isPositive();
+
+        // С того же адреса по другим логинам - до лимита по IP
+        assertThat(throttle.tryAcquire("bob", "10.0.0.1").isAllowed()).isTrue();
+        assertThat(throttle.tryAcquire("carol", "10.0.0.1").isAllowed()).isTrue();
+        assertThat(throttle.tryAcquire("dave", "10.0.0.1").getScope()).isEqualTo(LoginThrottleService.Scope.IP);
+    }
+
+    @Test
+    void concurrentAttemptsNeverExceedLimit() {
+        LoginThrottleService throttle = new LoginThrottleService(true, 3_600_000L, 100, 100_000, 1000);
+        AtomicInteger allowed = new AtomicInteger();
+
+        IntStream.range(0, 1000).parallel().forEach(i -> {
+            if (throttle.tryAcquire("admin", "10.0.0." + (i % 200)).isAllowed()) {
+                allowed.incrementAndGet();
+            }
+        });
+
+        assertThat(allowed.get()).isEqualTo(100);
+    }
+
+    @Test
+    void keepsNumberOfKeysBounded() {
+        LoginThrottleService throttle = new LoginThrottleService(true, 3_600_000L, 10, 10, 50);
+
+        for (int i = 0; i < 500; i++) {
+            assertThat(throttle.tryAcquire("user" + i, "10.0." + (i / 250) + "." + (i % 250)).isAllowed()).isTrue();
+        }
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        throttle.bindTo(registry);
+        assertThat(registry.get("auth.throttle.keys").tag("scope", "login").gauge().value()).isLessThanOrEqualTo(50);
+        assertThat(registry.get("auth.throttle.keys").tag("scope", "ip").gauge().value()).isLessThanOrEqualTo(50);
+    }
+
+    @Test
+    void rejectedLoginDoesNotConsumeAddressLimit() {
+        LoginThrottleService throttle = new LoginThrottleService(true, 3_600_000L, 2, 5, 1000);
+
+        assertThat(throttle.tryAcquire("alice", "10.0.0.1").isAllowed()).isTrue();
+        assertThat(throttle.tryAcquire("alice", "10.0.0.1").isAllowed()).isTrue();
+        for (int i = 0; i < 10; i++) {
+            assertThat(throttle.tryAcquire("alice", "10.0.0.1").getScope()).isEqualTo(LoginThrottleService.Scope.LOGIN);
+        }
+
+        // Отказы по логину не израсходовали лимит адреса: осталось 3 попытки из 5
+        for (int i = 0; i < 3; i++) {
+            assertThat(throttle.tryAcquire("user" + i, "10.0.0.1").isAllowed()).isTrue();
+        }
+        assertThat(throttle.tryAcquire("bob", "10.0.0.1").getScope()).isEqualTo(LoginThrottleService.Scope.IP);
+    }
+
+    @Test
+    void keyFloodingDoesNotResetBlockedLogins() {
+        LoginThrottleService throttle = new LoginThrottleService(true, 3_600_000L, 3, 1000, 256);
+        for (int victim = 0; victim < 20; victim++) {
+            for (int i = 0; i < 3; i++) {
+                assertThat(throttle.tryAcquire("victim" + victim, "10.0.0.1").isAllowed()).isTrue();
+            }
+        }
+
+        int allowed = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (throttle.tryAcquire("flood" + i, "10.1." + (i / 250) + "." + (i % 250)).isAllowed()) {
+                allowed++;
+            }
+        }
+
+        // Новые ключи вытесняют друг друга, но не счетчики, упершиеся в лимит
+        assertThat(allowed).isGreaterThan(9_000);
+        for (int victim = 0; victim < 20; victim++) {
+            assertThat(throttle.tryAcquire("victim" + victim, "10.0.0.2").getScope()).isEqualTo(LoginThrottleService.Scope.LOGIN);
+        }
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        throttle.bindTo(registry);
+        assertThat(registry.get("auth.throttle.keys").tag("scope", "login").gauge().value()).isLessThanOrEqualTo(256);
+        assertThat(registry.get("auth.throttle.evictions").functionCounter().count()).isGreaterThan(9_000);
+    }
+
+    @Test
+    void stripesFullOfBlockedKeysStillAdmitNewKeys() {
+        // 64 части по 20 ключей; лимит 1 - ключ блокируется первой же попыткой
+        LoginThrottleService throttle = new LoginThrottleService(true, 3_600_000L, 1, 100, 64 * 20);
+        for (int i = 0; i < 5_000; i++) {
+            assertThat(throttle.tryAcquire("victim" + i, null).isAllowed()).isTrue();
+        }
+
+        // Все части заполнены заблокированными ключами, но новые логины не получают отказ
+        for (int i = 0; i < 1_000; i++) {
+            assertThat(throttle.tryAcquire("fresh" + i, null).isAllowed()).isTrue();
+        }
+        // Первый ключ попал в пустую таблицу, и его лимит по-прежнему действует
+        assertThat(throttle.tryAcquire("victim0", null).getScope()).isEqualTo(LoginThrottleService.Scope.LOGIN);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        throttle.bindTo(registry);
+        assertThat(registry.get("auth.throttle.keys").tag("scope", "login").gauge().value()).isLessThanOrEqualTo(64 * 20);
+        assertThat(registry.get("auth.throttle.untracked").functionCounter().count()).isGreaterThan(4_000);
+    }
+}
@@ -0,0 +1,98 @@
+package ru.auth.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.BadCredentialsException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Ротация refresh токенов: старый токен после обмена недействителен, повторное предъявление
+ * использованного токена отзывает всю цепочку, из параллельных обменов одного токена успешен ровно один.
+ */
+@SpringBootTest
+class RefreshTokenServiceTest {
+
+    private static final String LOGIN = "refresh-test";
+
+    @Autowired
+    private RefreshTokenService refreshTokenService;
+
+    @AfterEach
+    void cleanUp() {
+        refreshTokenService.revokeAll(LOGIN);
+    }
+
+    @Test
+    void rotationInvalidatesOldToken() {
+        String first = refreshTokenService.issue(LOGIN);
+
+        RefreshTokenService.Rotation rotation = refreshTokenService.rotate(first);
+
+        assertThat(rotation.getLogin()).isEqualTo(LOGIN);
+        assertThat(rotation.getRefreshToken()).isNotEqualTo(first);
+        assertThatThrownBy(() -> refreshTokenService.rotate(first)).isInstanceOf(BadCredentialsException.class);
+    }
+
+    @Test
+    void reuseOfUsedTokenRevokesWholeFamily() {
+        String first = refreshTokenService.issue(LOGIN);
+        String second = refreshTokenService.rotate(first).getRefreshToken();
+        String other = refreshTokenService.issue(LOGIN);
+
+        assertThatThrownBy(() -> refreshTokenService.rotate(first)).isInstanceOf(BadCredentialsException.class);
+
+        // Токен, выданный в той же цепочке после повторного предъявления, тоже отозван
+        assertThatThrownBy(() -> refreshTokenService.rotate(second)).isInstanceOf(BadCredentialsException.class);
+        // Другие цепочки пользователя не затронуты
+        assertThat(refreshTokenService.rotate(other).getLogin()).isEqualTo(LOGIN);
+    }
+
+    @Test
+    void concurrentRotationsHaveExactlyOneWinner() throws Exception {
+        int threads = 4;
+        String token = refreshTokenService.issue(LOGIN);
+        CountDownLatch start = new CountDownLatch(1);
+        Callable<RefreshTokenService.Rotation> rotate = () -> {
+            start.await();
+            return refreshTokenService.rotate(token);
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        int succeeded = 0;
+        int rejected = 0;
+        try {
+            List<Future<RefreshTokenService.Rotation>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(rotate));
+            }
+            start.countDown();
+            for (Future<RefreshTokenService.Rotation> result : results) {
+                try {
+                    result.get(10, TimeUnit.SECONDS);
+                    succeeded++;
+                } catch (ExecutionException e) {
+                    assertThat(e.getCause()).isInstanceOf(BadCredentialsException.class);
+                    rejected++;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(succeeded).isEqualTo(1);
+        assertThat(rejected).isEqualTo(threads - 1);
+    }
+}
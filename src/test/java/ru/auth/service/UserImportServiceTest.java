@@ -0,0 +1,96 @@
+package ru.auth.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import ru.auth.model.Role;
+import ru.auth.model.User;
+import ru.auth.repository.UserRepository;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = "auth.import.batch-size=2")
+class UserImportServiceTest {
+
+    @Autowired
+    private UserImportService importService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    private final List<String> errors = new ArrayList<>();
+
+    @Test
+    void importsNdjsonAndReportsRejectedLines() throws Exception {
+        String bcrypt = new BCryptPasswordEncoder(4).encode("imported_pw");
+        String input = String.join("\n",
+                "{\"login\":\"Imp_One\",\"email\":\"one@imp.ru\",\"passwordHash\":\"" + bcrypt + "\"}",
+                "{\"login\":\"imp_two\",\"email\":\"two@imp.ru\",\"password\":\"plain_pw\",\"roles\":[\"PREMIUM_USER\"]}",
+                "{\"login\":\"imp_one\",\"email\":\"other@imp.ru\",\"password\":\"pw\"}",
+                "{\"login\":\"imp_three\",\"email\":\"three@imp.ru\",\"passwordHash\":\"md5:abc\"}",
+                "not json",
+                "{\"login\":\"imp_four\",\"email\":\"four@imp.ru\",\"password\":\"pw\",\"roles\":[\"ROOT\"]}");
+
+        UserImportService.Summary summary = run(input, UserImportService.Format.NDJSON);
+
+        assertThat(summary.getImported()).isEqualTo(2);
+        assertThat(summary.getFailed()).isEqualTo(4);
+        // Занятые логины выясняются при записи пачки, поэтому порядок ошибок не совпадает с порядком строк
+        assertThat(errors).containsExactlyInAnyOrder(
+                "3 imp_one: Логин или почта уже заняты",
+                "4 imp_three: Хэш пароля не в формате bcrypt или argon2",
+                "5 null",
+                "6 imp_four: Неизвестная роль: ROOT");
+
+        User one = userRepository.findByLogin("imp_one").orElseThrow();
+        assertThat(one.getPassword()).isEqualTo("{bcrypt}" + bcrypt);
+        assertThat(passwordEncoder.matches("imported_pw", one.getPassword())).isTrue();
+        assertThat(one.getRoles()).extracting(Role::getName).containsExactly("GUEST");
+
+        User two = userRepository.findByLogin("imp_two").orElseThrow();
+        assertThat(passwordEncoder.matches("plain_pw", two.getPassword())).isTrue();
+        assertThat(two.getRoles()).extracting(Role::getName).containsExactly("PREMIUM_USER");
+    }
+
+    @Test
+    void importsCsvWithQuotedValues() throws Exception {
+        String input = String.join("\n",
+                "login,email,password,roles",
+                "csv_one,csv.one@imp.ru,\"pw,with \"\"quotes\"\"\",GUEST|PREMIUM_USER",
+                "csv_two,not-an-email,pw,");
+
+        UserImportService.Summary summary = run(input, UserImportService.Format.CSV);
+
+        assertThat(summary.getImported()).isEqualTo(1);
+        assertThat(errors).containsExactly("3 csv_two: Некорректная почта");
+        User one = userRepository.findByLogin("csv_one").orElseThrow();
+        assertThat(passwordEncoder.matches("pw,with \"quotes\"", one.getPassword())).isTrue();
+        assertThat(one.getRoles()).extracting(Role::getName).containsExactlyInAnyOrder("GUEST", "PREMIUM_USER");
+    }
+
+    private UserImportService.Summary run(String input, UserImportService.Format format) throws Exception {
+        assertThat(importService.tryAcquire()).isTrue();
+        return importService.importUsers(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), format,
+                new UserImportService.Listener() {
+                    @Override
+                    public void lineFailed(long line, String login, String error) {
+                        // Текст ошибки разбора JSON зависит от версии Jackson
+                        errors.add(login == null ? line + " null" : line + " " + login + ": " + error);
+                    }
+
+                    @Override
+                    public void batchCompleted(UserImportService.Summary progress) {
+                    }
+                });
+    }
+}